@@ -1,15 +1,27 @@
 package iskahoot.client;
 
 import iskahoot.client.gui.GameGUI;
+import iskahoot.model.ScoreBoard;
 import iskahoot.net.*;
 
 import javax.swing.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
 
 public class Client {
+    private static final WireFormat FORMAT = "serialized".equalsIgnoreCase(System.getProperty("iskahoot.protocol"))
+            ? WireFormat.SERIALIZED
+            : WireFormat.BINARY;
+    // The server sends heartbeats well within this; silence for longer means it is gone.
+    private static final int SERVER_TIMEOUT_MS = Integer.getInteger("iskahoot.heartbeat.timeoutMs", 15000);
+    // After losing the connection the client keeps trying to resume its seat for this long.
+    private static final long RESUME_GRACE_MS = Long.getLong("iskahoot.resume.graceMs", 60000);
+    private static final long RECONNECT_DELAY_MS = 1000;
+
     private final String serverIp;
     private final int serverPort;
     private final String gameCode;
@@ -17,10 +29,13 @@ public class Client {
     private final String username;
 
     private Socket socket;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    private DataOutputStream out;
+    private DataInputStream in;
     private GameGUI gui;
     private boolean running = true;
+    private String resumeToken;
+    // Agreed in the last successful join; 0 until then.
+    private volatile int protocolVersion;
 
     public Client(String serverIp, int serverPort, String gameCode, String teamName, String username) {
         this.serverIp = serverIp;
@@ -32,34 +47,34 @@ public class Client {
 
     public void start() {
         try {
-            socket = new Socket(serverIp, serverPort);
-            out = new ObjectOutputStream(socket.getOutputStream());
-            in = new ObjectInputStream(socket.getInputStream());
-
-            out.writeObject(new JoinRequest(username, teamName, gameCode));
-            out.flush();
-
-            Object response = in.readObject();
-            if (response instanceof JoinResponse) {
-                JoinResponse jr = (JoinResponse) response;
-                if (!jr.isSuccess()) {
-                    System.err.println("Failed to join: " + jr.getMessage());
-                    JOptionPane.showMessageDialog(null, "Failed to join: " + jr.getMessage());
-                    return;
-                }
-            } else {
+            JoinResponse jr = join();
+            if (jr == null) {
                 System.err.println("Unexpected response from server.");
                 return;
             }
+            if (!jr.isSuccess()) {
+                System.err.println("Failed to join: " + jr.getMessage());
+                JOptionPane.showMessageDialog(null, "Failed to join: " + jr.getMessage());
+                return;
+            }
 
             SwingUtilities.invokeAndWait(() -> {
                 gui = new GameGUI(username);
                 gui.setVisible(true);
                 gui.setOnAnswerSelected(this::sendAnswer);
+                gui.setOnFullScoreboardRequested(this::requestFullScoreboard);
             });
 
             while (running) {
-                Object msg = in.readObject();
+                Object msg;
+                try {
+                    msg = readMessage();
+                } catch (IOException e) {
+                    if (!resume(e)) {
+                        throw e;
+                    }
+                    continue;
+                }
                 handleMessage(msg);
             }
 
@@ -77,22 +92,103 @@ public class Client {
         }
     }
 
+    // Opens a new connection and sends a JoinRequest, with the resume token once we have one.
+    // Returns null if the server answers with anything but a JoinResponse.
+    private JoinResponse join() throws IOException {
+        synchronized (this) {
+            if (socket != null) {
+                socket.close();
+            }
+            socket = new Socket(serverIp, serverPort);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        }
+
+        int version = FORMAT == WireFormat.BINARY ? BinaryCodec.VERSION : 0;
+        sendMessage(new JoinRequest(username, teamName, gameCode, version, resumeToken));
+
+        Object response = readMessage();
+        if (!(response instanceof JoinResponse)) {
+            return null;
+        }
+        JoinResponse jr = (JoinResponse) response;
+        if (jr.isSuccess()) {
+            protocolVersion = jr.getProtocolVersion();
+            if (jr.getResumeToken() != null) {
+                resumeToken = jr.getResumeToken();
+            }
+            if (jr.getProtocolVersion() >= BinaryCodec.HEARTBEAT_VERSION) {
+                socket.setSoTimeout(SERVER_TIMEOUT_MS);
+            }
+        }
+        return jr;
+    }
+
+    // Tries to take our seat back after the connection dropped. The server replays what we
+    // missed, so the message loop simply carries on.
+    private boolean resume(IOException cause) {
+        if (resumeToken == null) {
+            return false;
+        }
+        System.err.println("Connection lost (" + cause.getMessage() + "), reconnecting...");
+        long giveUp = System.currentTimeMillis() + RESUME_GRACE_MS;
+        while (System.currentTimeMillis() < giveUp) {
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+                JoinResponse jr = join();
+                if (jr == null || !jr.isSuccess()) {
+                    System.err.println("Could not resume: " + (jr == null ? "unexpected response" : jr.getMessage()));
+                    return false;
+                }
+                System.out.println(jr.getMessage());
+                return true;
+            } catch (IOException e) {
+                // Server still unreachable; try again until the grace window runs out.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
     private void handleMessage(Object msg) {
-        if (msg instanceof GameStartMessage) {
+        if (msg instanceof HeartbeatMessage) {
+            try {
+                sendMessage((HeartbeatMessage) msg);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else if (msg instanceof GameStartMessage) {
             System.out.println("Game Started!");
         } else if (msg instanceof QuestionMessage) {
             QuestionMessage qm = (QuestionMessage) msg;
             gui.displayQuestion(qm.getQuestion());
-            startTimer(30);
+            long remaining = qm.getRemainingMillis() > 0 ? qm.getRemainingMillis() : 30000;
+            startTimer((int) ((remaining + 999) / 1000));
         } else if (msg instanceof ScoreBoardMessage) {
             ScoreBoardMessage sbm = (ScoreBoardMessage) msg;
             gui.displayScoreboard(sbm.getScoreBoard());
             if (sbm.isFinal()) {
                 gui.showGameEnd(sbm.getScoreBoard());
                 running = false;
+            } else if (!sbm.isReply()) {
+                // Round board; only versioned ones are keyframes for later deltas.
+                if (sbm.getVersion() != 0) {
+                    replica.reset(sbm.getScoreBoard(), sbm.getVersion());
+                }
+                gui.showAnswerFeedback(false, -1);
+            }
+        } else if (msg instanceof ScoreBoardDeltaMessage) {
+            ScoreBoard board = replica.apply((ScoreBoardDeltaMessage) msg);
+            if (board == null) {
+                requestKeyframe();
             } else {
+                gui.displayScoreboard(board);
                 gui.showAnswerFeedback(false, -1);
             }
+        } else if (msg instanceof StandingMessage) {
+            gui.displayStanding(((StandingMessage) msg).getStanding());
         }
     }
 
@@ -114,16 +210,45 @@ public class Client {
         timer.start();
     }
 
+    private final ScoreBoardReplica replica = new ScoreBoardReplica();
+
+    // Servers below RANKED_BOARD_VERSION do not know board requests; they send full boards anyway.
+    private void requestFullScoreboard() {
+        if (protocolVersion < BinaryCodec.RANKED_BOARD_VERSION)
+            return;
+        try {
+            sendMessage(new ScoreBoardRequest());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void requestKeyframe() {
+        if (protocolVersion < BinaryCodec.DELTA_VERSION)
+            return;
+        try {
+            sendMessage(new ScoreBoardRequest(true));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     private void sendAnswer(int index) {
         try {
-            out.writeObject(new AnswerMessage(index));
-            out.flush();
-            out.reset();
+            sendMessage(new AnswerMessage(index));
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private synchronized void sendMessage(Message msg) throws IOException {
+        MessageCodec.writeFrame(out, msg, FORMAT);
+    }
+
+    private Object readMessage() throws IOException {
+        return MessageCodec.readFrame(in);
+    }
+
     public static void main(String[] args) {
         if (args.length != 5) {
             System.out.println("Usage: java iskahoot.client.Client <IP> <PORT> <GameCode> <TeamName> <Username>");
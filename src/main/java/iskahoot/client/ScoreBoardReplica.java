@@ -0,0 +1,35 @@
+package iskahoot.client;
+
+import iskahoot.model.ScoreBoard;
+import iskahoot.net.ScoreBoardDeltaMessage;
+
+// Client copy of the round board, rebuilt from keyframes and advanced by deltas.
+public class ScoreBoardReplica {
+    private ScoreBoard board;
+    private long version = 0;
+
+    public synchronized void reset(ScoreBoard board, long version) {
+        this.board = board;
+        this.version = version;
+    }
+
+    // Returns the updated board, or null when the delta does not follow the board held
+    // here and a keyframe is needed.
+    public synchronized ScoreBoard apply(ScoreBoardDeltaMessage msg) {
+        if (board == null || msg.getBaseVersion() != version) {
+            return null;
+        }
+        try {
+            board = msg.getDelta().applyTo(board);
+        } catch (IllegalArgumentException e) {
+            board = null;
+            return null;
+        }
+        version = msg.getVersion();
+        return board;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+}
@@ -1,5 +1,6 @@
 package iskahoot.client.gui;
 
+import iskahoot.model.PlayerStanding;
 import iskahoot.model.Question;
 import iskahoot.model.ScoreBoard;
 
@@ -20,6 +21,7 @@ public class GameGUI extends JFrame {
     private boolean canAnswer = false;
     private Question currentQuestion;
     private Consumer<Integer> onAnswerSelected;
+    private Runnable onFullScoreboardRequested;
 
     public GameGUI(String playerName) {
         this.playerName = playerName;
@@ -67,6 +69,14 @@ public class GameGUI extends JFrame {
         scoreArea.setEditable(false);
         JScrollPane scrollPane = new JScrollPane(scoreArea);
         rightPanel.add(scrollPane, BorderLayout.CENTER);
+
+        JButton fullBoardButton = new JButton("Full scoreboard");
+        fullBoardButton.addActionListener(e -> {
+            if (onFullScoreboardRequested != null) {
+                onFullScoreboardRequested.run();
+            }
+        });
+        rightPanel.add(fullBoardButton, BorderLayout.SOUTH);
         mainPanel.add(rightPanel, BorderLayout.EAST);
 
         statusLabel = new JLabel("Connected.");
@@ -115,6 +125,11 @@ public class GameGUI extends JFrame {
         });
     }
 
+    public void displayStanding(PlayerStanding standing) {
+        SwingUtilities.invokeLater(() -> playerInfoLabel.setText(
+                String.format("Player: %s | Rank %s", playerName, standing)));
+    }
+
     public void showAnswerFeedback(boolean isCorrect, int correctAnswerIndex) {
         SwingUtilities.invokeLater(() -> {
             if (isCorrect) {
@@ -153,4 +168,8 @@ public class GameGUI extends JFrame {
     public void setOnAnswerSelected(Consumer<Integer> onAnswerSelected) {
         this.onAnswerSelected = onAnswerSelected;
     }
+
+    public void setOnFullScoreboardRequested(Runnable onFullScoreboardRequested) {
+        this.onFullScoreboardRequested = onFullScoreboardRequested;
+    }
 }
@@ -1,29 +1,76 @@
 package iskahoot.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicReference;
 
+// Live player state. The statistics sit in one immutable PlayerSnapshot that is
+// replaced atomically, so updates from any thread are race-free and readers always
+// see the three counters from the same moment.
 public class Player implements Serializable {
-    private final String username;
-    private String teamName;
-    private int score;
-    private int questionsAnswered;
-    private int correctAnswers;
+    // Players travel inside serialized boards, so the stream keeps the fields older
+    // clients know rather than the snapshot reference.
+    private static final long serialVersionUID = 2496996352159663016L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("username", String.class),
+            new ObjectStreamField("teamName", String.class),
+            new ObjectStreamField("score", int.class),
+            new ObjectStreamField("questionsAnswered", int.class),
+            new ObjectStreamField("correctAnswers", int.class),
+    };
+
+    private String username;
+    private transient AtomicReference<PlayerSnapshot> stats;
 
     public Player(String username) {
         this.username = username;
-        this.teamName = "";
-        this.score = 0;
-        this.questionsAnswered = 0;
-        this.correctAnswers = 0;
+        this.stats = new AtomicReference<>(new PlayerSnapshot(username, "", 0, 0, 0));
+    }
+
+    static Player of(PlayerSnapshot snapshot) {
+        Player player = new Player(snapshot.getUsername());
+        player.stats.set(snapshot);
+        return player;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        PlayerSnapshot s = stats.get();
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("username", username);
+        fields.put("teamName", s.getTeamName());
+        fields.put("score", s.getScore());
+        fields.put("questionsAnswered", s.getQuestionsAnswered());
+        fields.put("correctAnswers", s.getCorrectAnswers());
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        username = (String) fields.get("username", null);
+        String teamName = (String) fields.get("teamName", "");
+        stats = new AtomicReference<>(new PlayerSnapshot(username, teamName == null ? "" : teamName, fields.get("score", 0), fields.get("questionsAnswered", 0),
+                fields.get("correctAnswers", 0)));
     }
 
     public void addScore(int points) {
-        this.score += points;
-        this.correctAnswers++;
+        stats.updateAndGet(s -> s.withCorrectAnswer(points));
     }
 
     public void incrementQuestionsAnswered() {
-        this.questionsAnswered++;
+        stats.updateAndGet(PlayerSnapshot::withQuestionAnswered);
+    }
+
+    // Puts back the statistics of a player rebuilt from a checkpoint.
+    public void restore(int score, int questionsAnswered, int correctAnswers) {
+        stats.updateAndGet(s -> new PlayerSnapshot(s.getUsername(), s.getTeamName(), score, questionsAnswered,
+                correctAnswers));
+    }
+
+    public PlayerSnapshot snapshot() {
+        return stats.get();
     }
 
     public String getUsername() {
@@ -31,40 +78,36 @@ public class Player implements Serializable {
     }
 
     public String getTeamName() {
-        return teamName;
+        return stats.get().getTeamName();
     }
 
     public void setTeamName(String teamName) {
-        this.teamName = teamName;
+        stats.updateAndGet(s -> s.withTeamName(teamName));
     }
 
     public int getScore() {
-        return score;
+        return stats.get().getScore();
     }
 
     public void setScore(int score) {
-        this.score = score;
+        stats.updateAndGet(s -> s.withScore(score));
     }
 
     public int getQuestionsAnswered() {
-        return questionsAnswered;
+        return stats.get().getQuestionsAnswered();
     }
 
     public int getCorrectAnswers() {
-        return correctAnswers;
+        return stats.get().getCorrectAnswers();
     }
 
     public double getAccuracy() {
-        if (questionsAnswered == 0) {
-            return 0.0;
-        }
-        return (double) correctAnswers / questionsAnswered * 100.0;
+        return stats.get().getAccuracy();
     }
 
     @Override
     public String toString() {
-        return String.format("%s [%s] - Score: %d, Accuracy: %.1f%%",
-                username, teamName, score, getAccuracy());
+        return stats.get().toString();
     }
 
     @Override
@@ -81,4 +124,4 @@ public class Player implements Serializable {
     public int hashCode() {
         return username.hashCode();
     }
-}
\ No newline at end of file
+}
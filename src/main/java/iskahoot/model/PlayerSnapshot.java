@@ -0,0 +1,77 @@
+package iskahoot.model;
+
+import java.io.Serializable;
+
+// Immutable player statistics at one point in time. Player swaps in a new snapshot on
+// every change, so boards can hold these directly without copying or locking.
+public final class PlayerSnapshot implements Serializable {
+    private final String username;
+    private final String teamName;
+    private final int score;
+    private final int questionsAnswered;
+    private final int correctAnswers;
+
+    public PlayerSnapshot(String username, String teamName, int score, int questionsAnswered, int correctAnswers) {
+        this.username = username;
+        this.teamName = teamName;
+        this.score = score;
+        this.questionsAnswered = questionsAnswered;
+        this.correctAnswers = correctAnswers;
+    }
+
+    PlayerSnapshot withTeamName(String teamName) {
+        return new PlayerSnapshot(username, teamName, score, questionsAnswered, correctAnswers);
+    }
+
+    PlayerSnapshot withScore(int score) {
+        return new PlayerSnapshot(username, teamName, score, questionsAnswered, correctAnswers);
+    }
+
+    PlayerSnapshot withCorrectAnswer(int points) {
+        return new PlayerSnapshot(username, teamName, score + points, questionsAnswered, correctAnswers + 1);
+    }
+
+    PlayerSnapshot withQuestionAnswered() {
+        return new PlayerSnapshot(username, teamName, score, questionsAnswered + 1, correctAnswers);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getTeamName() {
+        return teamName;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getQuestionsAnswered() {
+        return questionsAnswered;
+    }
+
+    public int getCorrectAnswers() {
+        return correctAnswers;
+    }
+
+    public double getAccuracy() {
+        if (questionsAnswered == 0) {
+            return 0.0;
+        }
+        return (double) correctAnswers / questionsAnswered * 100.0;
+    }
+
+    public boolean sameStats(PlayerSnapshot other) {
+        return score == other.score
+                && questionsAnswered == other.questionsAnswered
+                && correctAnswers == other.correctAnswers
+                && teamName.equals(other.teamName);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [%s] - Score: %d, Accuracy: %.1f%%",
+                username, teamName, score, getAccuracy());
+    }
+}
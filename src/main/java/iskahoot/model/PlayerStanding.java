@@ -0,0 +1,59 @@
+package iskahoot.model;
+
+import java.io.Serializable;
+
+// Where one player stands, sent alongside a top-K scoreboard that may not list them.
+public class PlayerStanding implements Serializable {
+    private final int rank;
+    private final int score;
+    private final int totalPlayers;
+    private final String teamName;
+    private final int teamRank;
+    private final int teamScore;
+    private final int totalTeams;
+
+    public PlayerStanding(int rank, int score, int totalPlayers, String teamName, int teamRank, int teamScore,
+            int totalTeams) {
+        this.rank = rank;
+        this.score = score;
+        this.totalPlayers = totalPlayers;
+        this.teamName = teamName;
+        this.teamRank = teamRank;
+        this.teamScore = teamScore;
+        this.totalTeams = totalTeams;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getTotalPlayers() {
+        return totalPlayers;
+    }
+
+    public String getTeamName() {
+        return teamName;
+    }
+
+    public int getTeamRank() {
+        return teamRank;
+    }
+
+    public int getTeamScore() {
+        return teamScore;
+    }
+
+    public int getTotalTeams() {
+        return totalTeams;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("#%d of %d (%d pts) - %s #%d of %d (%d pts)",
+                rank, totalPlayers, score, teamName, teamRank, totalTeams, teamScore);
+    }
+}
@@ -3,10 +3,18 @@ package iskahoot.model;
 import java.io.Serializable;
 
 public class Question implements Serializable {
+    // Questions are sent to object-stream clients, which still have the untagged class.
+    private static final long serialVersionUID = -1337115180152704264L;
+
     private String question;
     private int points;
     private int correct;
     private String[] options;
+    // Optional labels such as a category or difficulty; may be absent in JSON.
+    private String[] tags;
+    // Where the question came from, for caching its encoding; server side only.
+    private transient int bankVersion;
+    private transient int bankId = -1;
 
     public Question() {
         // Construtor vazio para o Gson ler o JSON
@@ -19,6 +27,11 @@ public class Question implements Serializable {
         this.options = options;
     }
 
+    public Question(String question, int points, int correct, String[] options, String[] tags) {
+        this(question, points, correct, options);
+        this.tags = tags;
+    }
+
     public String getQuestion() {
         return question;
     }
@@ -51,6 +64,28 @@ public class Question implements Serializable {
         this.options = options;
     }
 
+    public String[] getTags() {
+        return tags == null ? new String[0] : tags;
+    }
+
+    public void setTags(String[] tags) {
+        this.tags = tags;
+    }
+
+    public void setBankSource(int bankVersion, int bankId) {
+        this.bankVersion = bankVersion;
+        this.bankId = bankId;
+    }
+
+    public int getBankVersion() {
+        return bankVersion;
+    }
+
+    // -1 unless the question was taken from a question bank.
+    public int getBankId() {
+        return bankId;
+    }
+
     public boolean isCorrectAnswer(int answerIndex) {
         return answerIndex == correct;
     }
@@ -0,0 +1,16 @@
+package iskahoot.model;
+
+// Read-only question bank addressed by dense ids (0 .. size-1). Implementations may
+// keep questions encoded and only build a Question when one is asked for.
+public interface QuestionStore {
+    int size();
+
+    Question get(int id);
+
+    // Cheap per-question attributes for building indexes without decoding questions.
+    int points(int id);
+
+    int optionCount(int id);
+
+    String[] tags(int id);
+}
@@ -1,58 +1,169 @@
 package iskahoot.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.*;
-import java.util.stream.Collectors;
 
+// A point-in-time board. Players and team scores are kept in rank order (highest
+// score first), so rendering and winner lookups never sort. A board may hold only
+// the top entries; playerCount and teamCount are always the full totals.
 public class ScoreBoard implements Serializable {
-    private final List<Player> players;
-    private final int currentQuestion;
-    private final int totalQuestions;
-    private final long timestamp;
+    // Serialized clients from before the binary protocol still read boards, so the
+    // stream keeps their class version and fields: Player entries and teamMembers.
+    private static final long serialVersionUID = 4372172127566610396L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("players", List.class),
+            new ObjectStreamField("currentQuestion", int.class),
+            new ObjectStreamField("totalQuestions", int.class),
+            new ObjectStreamField("timestamp", long.class),
+            new ObjectStreamField("teamScores", Map.class),
+            new ObjectStreamField("teamMembers", Map.class),
+            new ObjectStreamField("playerCount", int.class),
+            new ObjectStreamField("teamCount", int.class),
+    };
+
+    private List<PlayerSnapshot> players;
+    private int currentQuestion;
+    private int totalQuestions;
+    private long timestamp;
+    private int playerCount;
+    private int teamCount;
+
+    private Map<String, Integer> teamScores;
+    // Only needed to render the board, so it is rebuilt on the receiving side.
+    private transient Map<String, List<PlayerSnapshot>> teamMembers;
+
+    public ScoreBoard(List<PlayerSnapshot> players, int currentQuestion, int totalQuestions) {
+        this(players, currentQuestion, totalQuestions, System.currentTimeMillis());
+    }
+
+    public ScoreBoard(List<PlayerSnapshot> players, int currentQuestion, int totalQuestions, long timestamp) {
+        this(rank(players), calculateTeamScores(players), currentQuestion, totalQuestions, timestamp);
+    }
+
+    private ScoreBoard(List<PlayerSnapshot> players, Map<String, Integer> teamScores, int currentQuestion,
+            int totalQuestions, long timestamp) {
+        this(players, teamScores, currentQuestion, totalQuestions, timestamp, players.size(), teamScores.size());
+    }
 
-    private final Map<String, Integer> teamScores;
-    private final Map<String, List<Player>> teamMembers;
+    // For callers that keep ranked running totals; both arguments must already be in rank order.
+    public ScoreBoard(List<PlayerSnapshot> players, Map<String, Integer> teamScores, int currentQuestion,
+            int totalQuestions) {
+        this(players, teamScores, currentQuestion, totalQuestions, System.currentTimeMillis(), players.size(),
+                teamScores.size());
+    }
 
-    public ScoreBoard(List<Player> players, int currentQuestion, int totalQuestions) {
+    public ScoreBoard(List<PlayerSnapshot> players, Map<String, Integer> teamScores, int currentQuestion,
+            int totalQuestions, long timestamp, int playerCount, int teamCount) {
         this.players = new ArrayList<>(players);
         this.currentQuestion = currentQuestion;
         this.totalQuestions = totalQuestions;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
+        this.teamScores = new LinkedHashMap<>(teamScores);
+        this.playerCount = playerCount;
+        this.teamCount = teamCount;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        List<Player> legacyPlayers = new ArrayList<>(players.size());
+        Map<String, List<Player>> legacyMembers = new HashMap<>();
+        for (String team : teamScores.keySet()) {
+            legacyMembers.put(team, new ArrayList<>());
+        }
+        for (PlayerSnapshot p : players) {
+            Player player = Player.of(p);
+            legacyPlayers.add(player);
+            legacyMembers.computeIfAbsent(displayTeamName(p.getTeamName()), k -> new ArrayList<>()).add(player);
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("players", legacyPlayers);
+        fields.put("currentQuestion", currentQuestion);
+        fields.put("totalQuestions", totalQuestions);
+        fields.put("timestamp", timestamp);
+        fields.put("teamScores", new LinkedHashMap<>(teamScores));
+        fields.put("teamMembers", legacyMembers);
+        fields.put("playerCount", playerCount);
+        fields.put("teamCount", teamCount);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        List<Player> legacyPlayers = (List<Player>) fields.get("players", null);
+        players = new ArrayList<>();
+        if (legacyPlayers != null) {
+            for (Player p : legacyPlayers) {
+                players.add(p.snapshot());
+            }
+        }
+        currentQuestion = fields.get("currentQuestion", 0);
+        totalQuestions = fields.get("totalQuestions", 0);
+        timestamp = fields.get("timestamp", 0L);
+        Map<String, Integer> scores = (Map<String, Integer>) fields.get("teamScores", null);
+        teamScores = scores == null ? new LinkedHashMap<>() : new LinkedHashMap<>(scores);
+        playerCount = fields.get("playerCount", players.size());
+        teamCount = fields.get("teamCount", teamScores.size());
+    }
 
-        this.teamScores = new HashMap<>();
-        this.teamMembers = new HashMap<>();
-        calculateTeamScores();
+    public static String displayTeamName(String team) {
+        return team == null || team.isEmpty() ? "No Team" : team;
     }
 
-    private void calculateTeamScores() {
-        for (Player p : players) {
-            String team = p.getTeamName();
-            if (team == null || team.isEmpty())
-                team = "No Team";
+    private static List<PlayerSnapshot> rank(List<PlayerSnapshot> players) {
+        List<PlayerSnapshot> ranked = new ArrayList<>(players);
+        ranked.sort((p1, p2) -> p2.getScore() - p1.getScore());
+        return ranked;
+    }
 
-            teamScores.put(team, teamScores.getOrDefault(team, 0) + p.getScore());
-            teamMembers.computeIfAbsent(team, k -> new ArrayList<>()).add(p);
+    private static Map<String, Integer> calculateTeamScores(List<PlayerSnapshot> players) {
+        Map<String, Integer> scores = new HashMap<>();
+        for (PlayerSnapshot p : players) {
+            scores.merge(displayTeamName(p.getTeamName()), p.getScore(), Integer::sum);
         }
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(scores.entrySet());
+        sorted.sort((e1, e2) -> e2.getValue().compareTo(e1.getValue()));
+        Map<String, Integer> ranked = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : sorted) {
+            ranked.put(entry.getKey(), entry.getValue());
+        }
+        return ranked;
+    }
+
+    // Grouping keeps the ranked player order, so members come out best first.
+    private Map<String, List<PlayerSnapshot>> teamMembers() {
+        if (teamMembers == null) {
+            Map<String, List<PlayerSnapshot>> members = new HashMap<>();
+            for (PlayerSnapshot p : players) {
+                members.computeIfAbsent(displayTeamName(p.getTeamName()), k -> new ArrayList<>()).add(p);
+            }
+            teamMembers = members;
+        }
+        return teamMembers;
     }
 
     public String getFormattedScores() {
         StringBuilder sb = new StringBuilder();
         sb.append("=== SCOREBOARD ===\n");
-        sb.append(String.format("Question %d of %d\n\n", currentQuestion, totalQuestions));
-
-        List<Map.Entry<String, Integer>> sortedTeams = new ArrayList<>(teamScores.entrySet());
-        sortedTeams.sort((e1, e2) -> e2.getValue().compareTo(e1.getValue()));
+        sb.append(String.format("Question %d of %d\n", currentQuestion, totalQuestions));
+        if (isPartial()) {
+            sb.append(String.format("Top %d of %d players, top %d of %d teams\n", players.size(), playerCount,
+                    teamScores.size(), teamCount));
+        }
+        sb.append("\n");
 
         int position = 1;
-        for (Map.Entry<String, Integer> entry : sortedTeams) {
+        for (Map.Entry<String, Integer> entry : teamScores.entrySet()) {
             String teamName = entry.getKey();
             int score = entry.getValue();
 
             sb.append(String.format("%d. %s - %d points\n", position++, teamName, score));
 
-            List<Player> members = teamMembers.get(teamName);
-            members.sort((p1, p2) -> p2.getScore() - p1.getScore()); // Sort members by score
-            for (Player p : members) {
+            List<PlayerSnapshot> members = teamMembers().getOrDefault(teamName, Collections.emptyList());
+            for (PlayerSnapshot p : members) {
                 sb.append(String.format("    - %s (%d)\n", p.getUsername(), p.getScore()));
             }
             sb.append("\n");
@@ -65,10 +176,26 @@ public class ScoreBoard implements Serializable {
         return getFormattedScores();
     }
 
-    public List<Player> getPlayers() {
+    public List<PlayerSnapshot> getPlayers() {
         return new ArrayList<>(players);
     }
 
+    public Map<String, Integer> getTeamScores() {
+        return new LinkedHashMap<>(teamScores);
+    }
+
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    public int getTeamCount() {
+        return teamCount;
+    }
+
+    public boolean isPartial() {
+        return players.size() < playerCount || teamScores.size() < teamCount;
+    }
+
     public int getCurrentQuestion() {
         return currentQuestion;
     }
@@ -81,19 +208,16 @@ public class ScoreBoard implements Serializable {
         return timestamp;
     }
 
-    public Player getWinningPlayer() {
+    public PlayerSnapshot getWinningPlayer() {
         if (players.isEmpty())
             return null;
-        players.sort((p1, p2) -> p2.getScore() - p1.getScore());
         return players.get(0);
     }
 
     public String getWinningTeam() {
         if (teamScores.isEmpty())
             return "No Teams";
-        return teamScores.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(entry -> entry.getKey() + " (" + entry.getValue() + " pts)")
-                .orElse("Unknown");
+        Map.Entry<String, Integer> winner = teamScores.entrySet().iterator().next();
+        return winner.getKey() + " (" + winner.getValue() + " pts)";
     }
 }
\ No newline at end of file
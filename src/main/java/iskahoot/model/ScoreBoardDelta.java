@@ -0,0 +1,144 @@
+package iskahoot.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The difference between two consecutive boards. The new ranking is described by
+// playerOrder: each position holds the index of an unchanged entry in the base board,
+// or -1 to take the next record from changedPlayers. Teams work the same way.
+// Entries that left the board are simply not referenced.
+public class ScoreBoardDelta implements Serializable {
+    public static final int CHANGED = -1;
+
+    private final int currentQuestion;
+    private final int totalQuestions;
+    private final long timestamp;
+    private final int playerCount;
+    private final int teamCount;
+    private final int[] playerOrder;
+    private final List<PlayerSnapshot> changedPlayers;
+    private final int[] teamOrder;
+    private final Map<String, Integer> changedTeams;
+
+    public ScoreBoardDelta(int currentQuestion, int totalQuestions, long timestamp, int playerCount, int teamCount,
+            int[] playerOrder, List<PlayerSnapshot> changedPlayers, int[] teamOrder, Map<String, Integer> changedTeams) {
+        this.currentQuestion = currentQuestion;
+        this.totalQuestions = totalQuestions;
+        this.timestamp = timestamp;
+        this.playerCount = playerCount;
+        this.teamCount = teamCount;
+        this.playerOrder = playerOrder;
+        this.changedPlayers = changedPlayers;
+        this.teamOrder = teamOrder;
+        this.changedTeams = changedTeams;
+    }
+
+    public static ScoreBoardDelta between(ScoreBoard base, ScoreBoard next) {
+        List<PlayerSnapshot> basePlayers = base.getPlayers();
+        Map<String, Integer> basePositions = new HashMap<>();
+        for (int i = 0; i < basePlayers.size(); i++) {
+            basePositions.put(basePlayers.get(i).getUsername(), i);
+        }
+        List<PlayerSnapshot> nextPlayers = next.getPlayers();
+        int[] playerOrder = new int[nextPlayers.size()];
+        List<PlayerSnapshot> changedPlayers = new ArrayList<>();
+        for (int i = 0; i < nextPlayers.size(); i++) {
+            PlayerSnapshot p = nextPlayers.get(i);
+            Integer at = basePositions.get(p.getUsername());
+            if (at != null && basePlayers.get(at).sameStats(p)) {
+                playerOrder[i] = at;
+            } else {
+                playerOrder[i] = CHANGED;
+                changedPlayers.add(p);
+            }
+        }
+
+        List<Map.Entry<String, Integer>> baseTeams = new ArrayList<>(base.getTeamScores().entrySet());
+        Map<String, Integer> teamPositions = new HashMap<>();
+        for (int i = 0; i < baseTeams.size(); i++) {
+            teamPositions.put(baseTeams.get(i).getKey(), i);
+        }
+        Map<String, Integer> nextTeams = next.getTeamScores();
+        int[] teamOrder = new int[nextTeams.size()];
+        Map<String, Integer> changedTeams = new LinkedHashMap<>();
+        int i = 0;
+        for (Map.Entry<String, Integer> team : nextTeams.entrySet()) {
+            Integer at = teamPositions.get(team.getKey());
+            if (at != null && baseTeams.get(at).getValue().equals(team.getValue())) {
+                teamOrder[i++] = at;
+            } else {
+                teamOrder[i++] = CHANGED;
+                changedTeams.put(team.getKey(), team.getValue());
+            }
+        }
+
+        return new ScoreBoardDelta(next.getCurrentQuestion(), next.getTotalQuestions(), next.getTimestamp(),
+                next.getPlayerCount(), next.getTeamCount(), playerOrder, changedPlayers, teamOrder, changedTeams);
+    }
+
+    public ScoreBoard applyTo(ScoreBoard base) {
+        List<PlayerSnapshot> basePlayers = base.getPlayers();
+        List<PlayerSnapshot> players = new ArrayList<>(playerOrder.length);
+        Iterator<PlayerSnapshot> changed = changedPlayers.iterator();
+        for (int at : playerOrder) {
+            if (at == CHANGED ? !changed.hasNext() : at < 0 || at >= basePlayers.size()) {
+                throw new IllegalArgumentException("Delta does not match its base board");
+            }
+            players.add(at == CHANGED ? changed.next() : basePlayers.get(at));
+        }
+
+        List<Map.Entry<String, Integer>> baseTeams = new ArrayList<>(base.getTeamScores().entrySet());
+        Map<String, Integer> teams = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, Integer>> changedTeam = changedTeams.entrySet().iterator();
+        for (int at : teamOrder) {
+            if (at == CHANGED ? !changedTeam.hasNext() : at < 0 || at >= baseTeams.size()) {
+                throw new IllegalArgumentException("Delta does not match its base board");
+            }
+            Map.Entry<String, Integer> team = at == CHANGED ? changedTeam.next() : baseTeams.get(at);
+            teams.put(team.getKey(), team.getValue());
+        }
+
+        return new ScoreBoard(players, teams, currentQuestion, totalQuestions, timestamp, playerCount, teamCount);
+    }
+
+    public int getCurrentQuestion() {
+        return currentQuestion;
+    }
+
+    public int getTotalQuestions() {
+        return totalQuestions;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    public int getTeamCount() {
+        return teamCount;
+    }
+
+    public int[] getPlayerOrder() {
+        return playerOrder;
+    }
+
+    public List<PlayerSnapshot> getChangedPlayers() {
+        return changedPlayers;
+    }
+
+    public int[] getTeamOrder() {
+        return teamOrder;
+    }
+
+    public Map<String, Integer> getChangedTeams() {
+        return changedTeams;
+    }
+}
@@ -0,0 +1,499 @@
+package iskahoot.net;
+
+import iskahoot.model.PlayerSnapshot;
+import iskahoot.model.PlayerStanding;
+import iskahoot.model.Question;
+import iskahoot.model.ScoreBoard;
+import iskahoot.model.ScoreBoardDelta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact encoding for the message family: [tag][fields...]. Ints are zigzag varints,
+// strings are a varint length followed by UTF-8 bytes (-1 for null).
+public final class BinaryCodec {
+    public static final int VERSION = 5;
+    // Peers answer heartbeats, and expect them, from this version on.
+    public static final int HEARTBEAT_VERSION = 2;
+    // Join messages carry a resume token from this version on.
+    public static final int RESUME_VERSION = 3;
+    // Ranked top-K boards with full counts and team totals, per-player standings and
+    // board requests. Older peers get SCOREBOARD with every player and nothing else.
+    public static final int RANKED_BOARD_VERSION = 4;
+    // Round boards as SCOREBOARD_DELTA against the previous one, and keyframe requests.
+    public static final int DELTA_VERSION = 5;
+
+    public static final byte JOIN_REQUEST = 1;
+    public static final byte JOIN_RESPONSE = 2;
+    public static final byte GAME_START = 3;
+    public static final byte QUESTION = 4;
+    public static final byte ANSWER = 5;
+    public static final byte SCOREBOARD = 6;
+    public static final byte STANDING = 7;
+    public static final byte SCOREBOARD_REQUEST = 8;
+    public static final byte SCOREBOARD_DELTA = 9;
+    public static final byte HEARTBEAT = 10;
+    public static final byte RANKED_SCOREBOARD = 11;
+
+    private BinaryCodec() {
+    }
+
+    public static void encode(Message msg, Writer w) {
+        encode(msg, w, VERSION);
+    }
+
+    // Messages whose layout changed are written the way a peer at that version reads them.
+    public static void encode(Message msg, Writer w, int version) {
+        if (msg instanceof AnswerMessage) {
+            w.writeByte(ANSWER);
+            w.writeInt(((AnswerMessage) msg).getAnswerIndex());
+        } else if (msg instanceof QuestionMessage) {
+            QuestionMessage m = (QuestionMessage) msg;
+            w.writeByte(QUESTION);
+            w.writeInt(m.getQuestionIndex());
+            w.writeInt(m.getTotalQuestions());
+            // Only the index and total differ between games; the body is shared.
+            byte[] body = QuestionBodyCache.shared().body(m.getQuestion(), version, BinaryCodec::encodeQuestion);
+            w.writeBytes(body, 0, body.length);
+            // Trailing, so older clients that stop after the body still decode the message.
+            w.writeLong(m.getRemainingMillis());
+        } else if (msg instanceof ScoreBoardMessage) {
+            ScoreBoardMessage m = (ScoreBoardMessage) msg;
+            if (version >= RANKED_BOARD_VERSION) {
+                w.writeByte(RANKED_SCOREBOARD);
+                w.writeBoolean(m.isFinal());
+                w.writeLong(m.getVersion());
+                writeScoreBoard(w, m.getScoreBoard());
+                // Trailing, like the question's remaining time, so it can be left out.
+                w.writeBoolean(m.isReply());
+            } else {
+                w.writeByte(SCOREBOARD);
+                w.writeBoolean(m.isFinal());
+                writePlainScoreBoard(w, m.getScoreBoard());
+            }
+        } else if (msg instanceof ScoreBoardDeltaMessage) {
+            ScoreBoardDeltaMessage m = (ScoreBoardDeltaMessage) msg;
+            w.writeByte(SCOREBOARD_DELTA);
+            w.writeLong(m.getVersion());
+            w.writeLong(m.getBaseVersion());
+            writeDelta(w, m.getDelta());
+        } else if (msg instanceof StandingMessage) {
+            PlayerStanding st = ((StandingMessage) msg).getStanding();
+            w.writeByte(STANDING);
+            w.writeInt(st.getRank());
+            w.writeInt(st.getScore());
+            w.writeInt(st.getTotalPlayers());
+            w.writeString(st.getTeamName());
+            w.writeInt(st.getTeamRank());
+            w.writeInt(st.getTeamScore());
+            w.writeInt(st.getTotalTeams());
+        } else if (msg instanceof ScoreBoardRequest) {
+            w.writeByte(SCOREBOARD_REQUEST);
+            w.writeBoolean(((ScoreBoardRequest) msg).isKeyframe());
+        } else if (msg instanceof HeartbeatMessage) {
+            w.writeByte(HEARTBEAT);
+            w.writeLong(((HeartbeatMessage) msg).getSentAt());
+        } else if (msg instanceof GameStartMessage) {
+            w.writeByte(GAME_START);
+            w.writeInt(((GameStartMessage) msg).getTotalQuestions());
+        } else if (msg instanceof JoinRequest) {
+            JoinRequest m = (JoinRequest) msg;
+            w.writeByte(JOIN_REQUEST);
+            w.writeInt(m.getProtocolVersion());
+            w.writeString(m.getUsername());
+            w.writeString(m.getTeamName());
+            w.writeString(m.getGameCode());
+            if (m.getProtocolVersion() >= RESUME_VERSION) {
+                w.writeString(m.getResumeToken());
+            }
+        } else if (msg instanceof JoinResponse) {
+            JoinResponse m = (JoinResponse) msg;
+            w.writeByte(JOIN_RESPONSE);
+            w.writeInt(m.getProtocolVersion());
+            w.writeBoolean(m.isSuccess());
+            w.writeString(m.getMessage());
+            if (m.getProtocolVersion() >= RESUME_VERSION) {
+                w.writeString(m.getResumeToken());
+            }
+        } else {
+            throw new IllegalArgumentException("No binary encoding for " + msg.getClass().getSimpleName());
+        }
+    }
+
+    public static Message decode(byte[] data, int offset, int length) throws IOException {
+        Reader r = new Reader(data, offset, length);
+        byte tag = r.readByte();
+        switch (tag) {
+            case ANSWER:
+                return new AnswerMessage(r.readInt());
+            case QUESTION: {
+                int index = r.readInt();
+                int total = r.readInt();
+                Question q = readQuestion(r);
+                return new QuestionMessage(q, index, total, r.hasRemaining() ? r.readLong() : 0);
+            }
+            case SCOREBOARD: {
+                boolean isFinal = r.readBoolean();
+                return new ScoreBoardMessage(readPlainScoreBoard(r), isFinal);
+            }
+            case RANKED_SCOREBOARD: {
+                boolean isFinal = r.readBoolean();
+                long version = r.readLong();
+                ScoreBoard board = readScoreBoard(r);
+                return new ScoreBoardMessage(board, isFinal, version, r.hasRemaining() && r.readBoolean());
+            }
+            case SCOREBOARD_DELTA: {
+                long version = r.readLong();
+                long baseVersion = r.readLong();
+                return new ScoreBoardDeltaMessage(version, baseVersion, readDelta(r));
+            }
+            case STANDING:
+                return new StandingMessage(new PlayerStanding(r.readInt(), r.readInt(), r.readInt(), r.readString(),
+                        r.readInt(), r.readInt(), r.readInt()));
+            case SCOREBOARD_REQUEST:
+                // Version 4 peers send no keyframe flag.
+                return new ScoreBoardRequest(r.hasRemaining() && r.readBoolean());
+            case HEARTBEAT:
+                return new HeartbeatMessage(r.readLong());
+            case GAME_START:
+                return new GameStartMessage(r.readInt());
+            case JOIN_REQUEST: {
+                int version = r.readInt();
+                String username = r.readString();
+                String teamName = r.readString();
+                String gameCode = r.readString();
+                String token = version >= RESUME_VERSION ? r.readString() : null;
+                return new JoinRequest(username, teamName, gameCode, version, token);
+            }
+            case JOIN_RESPONSE: {
+                int version = r.readInt();
+                boolean success = r.readBoolean();
+                String message = r.readString();
+                String token = version >= RESUME_VERSION ? r.readString() : null;
+                return new JoinResponse(success, message, version, token);
+            }
+            default:
+                throw new IOException("Unknown message tag: " + tag);
+        }
+    }
+
+    private static byte[] encodeQuestion(Question q) {
+        Writer w = new Writer(128);
+        writeQuestion(w, q);
+        return w.toByteArray();
+    }
+
+    private static void writeQuestion(Writer w, Question q) {
+        w.writeString(q.getQuestion());
+        w.writeInt(q.getPoints());
+        w.writeInt(q.getCorrect());
+        String[] options = q.getOptions();
+        w.writeInt(options.length);
+        for (String option : options) {
+            w.writeString(option);
+        }
+    }
+
+    private static Question readQuestion(Reader r) throws IOException {
+        String text = r.readString();
+        int points = r.readInt();
+        int correct = r.readInt();
+        String[] options = new String[r.readCount()];
+        for (int i = 0; i < options.length; i++) {
+            options[i] = r.readString();
+        }
+        return new Question(text, points, correct, options);
+    }
+
+    private static void writePlayer(Writer w, PlayerSnapshot p) {
+        w.writeString(p.getUsername());
+        w.writeString(p.getTeamName());
+        w.writeInt(p.getScore());
+        w.writeInt(p.getQuestionsAnswered());
+        w.writeInt(p.getCorrectAnswers());
+    }
+
+    private static PlayerSnapshot readPlayer(Reader r) throws IOException {
+        return new PlayerSnapshot(r.readString(), r.readString(), r.readInt(), r.readInt(), r.readInt());
+    }
+
+    // The original layout: every player, with team totals left to the receiver.
+    private static void writePlainScoreBoard(Writer w, ScoreBoard sb) {
+        w.writeInt(sb.getCurrentQuestion());
+        w.writeInt(sb.getTotalQuestions());
+        w.writeLong(sb.getTimestamp());
+        List<PlayerSnapshot> players = sb.getPlayers();
+        w.writeInt(players.size());
+        for (PlayerSnapshot p : players) {
+            writePlayer(w, p);
+        }
+    }
+
+    private static ScoreBoard readPlainScoreBoard(Reader r) throws IOException {
+        int current = r.readInt();
+        int total = r.readInt();
+        long timestamp = r.readLong();
+        int count = r.readCount();
+        List<PlayerSnapshot> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            players.add(readPlayer(r));
+        }
+        return new ScoreBoard(players, current, total, timestamp);
+    }
+
+    private static void writeScoreBoard(Writer w, ScoreBoard sb) {
+        w.writeInt(sb.getCurrentQuestion());
+        w.writeInt(sb.getTotalQuestions());
+        w.writeLong(sb.getTimestamp());
+        w.writeInt(sb.getPlayerCount());
+        w.writeInt(sb.getTeamCount());
+        List<PlayerSnapshot> players = sb.getPlayers();
+        w.writeInt(players.size());
+        for (PlayerSnapshot p : players) {
+            writePlayer(w, p);
+        }
+        Map<String, Integer> teamScores = sb.getTeamScores();
+        w.writeInt(teamScores.size());
+        for (Map.Entry<String, Integer> team : teamScores.entrySet()) {
+            w.writeString(team.getKey());
+            w.writeInt(team.getValue());
+        }
+    }
+
+    private static ScoreBoard readScoreBoard(Reader r) throws IOException {
+        int current = r.readInt();
+        int total = r.readInt();
+        long timestamp = r.readLong();
+        int playerCount = r.readInt();
+        int teamCount = r.readInt();
+        int count = r.readCount();
+        List<PlayerSnapshot> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            players.add(readPlayer(r));
+        }
+        int teamEntries = r.readCount();
+        Map<String, Integer> teamScores = new LinkedHashMap<>();
+        for (int i = 0; i < teamEntries; i++) {
+            teamScores.put(r.readString(), r.readInt());
+        }
+        return new ScoreBoard(players, teamScores, current, total, timestamp, playerCount, teamCount);
+    }
+
+    private static void writeDelta(Writer w, ScoreBoardDelta d) {
+        w.writeInt(d.getCurrentQuestion());
+        w.writeInt(d.getTotalQuestions());
+        w.writeLong(d.getTimestamp());
+        w.writeInt(d.getPlayerCount());
+        w.writeInt(d.getTeamCount());
+        writeOrder(w, d.getPlayerOrder());
+        List<PlayerSnapshot> changed = d.getChangedPlayers();
+        w.writeInt(changed.size());
+        for (PlayerSnapshot p : changed) {
+            writePlayer(w, p);
+        }
+        writeOrder(w, d.getTeamOrder());
+        Map<String, Integer> changedTeams = d.getChangedTeams();
+        w.writeInt(changedTeams.size());
+        for (Map.Entry<String, Integer> team : changedTeams.entrySet()) {
+            w.writeString(team.getKey());
+            w.writeInt(team.getValue());
+        }
+    }
+
+    private static ScoreBoardDelta readDelta(Reader r) throws IOException {
+        int current = r.readInt();
+        int total = r.readInt();
+        long timestamp = r.readLong();
+        int playerCount = r.readInt();
+        int teamCount = r.readInt();
+        int[] playerOrder = readOrder(r);
+        int count = r.readCount();
+        List<PlayerSnapshot> changed = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            changed.add(readPlayer(r));
+        }
+        int[] teamOrder = readOrder(r);
+        int teamEntries = r.readCount();
+        Map<String, Integer> changedTeams = new LinkedHashMap<>();
+        for (int i = 0; i < teamEntries; i++) {
+            changedTeams.put(r.readString(), r.readInt());
+        }
+        return new ScoreBoardDelta(current, total, timestamp, playerCount, teamCount, playerOrder, changed,
+                teamOrder, changedTeams);
+    }
+
+    private static void writeOrder(Writer w, int[] order) {
+        w.writeInt(order.length);
+        for (int at : order) {
+            w.writeInt(at);
+        }
+    }
+
+    private static int[] readOrder(Reader r) throws IOException {
+        int[] order = new int[r.readCount()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = r.readInt();
+        }
+        return order;
+    }
+
+    public static final class Writer {
+        private byte[] buf;
+        private int pos;
+
+        public Writer(int initialCapacity) {
+            this.buf = new byte[Math.max(16, initialCapacity)];
+        }
+
+        public int position() {
+            return pos;
+        }
+
+        public void skip(int n) {
+            ensure(n);
+            pos += n;
+        }
+
+        public void putInt(int at, int value) {
+            buf[at] = (byte) (value >>> 24);
+            buf[at + 1] = (byte) (value >>> 16);
+            buf[at + 2] = (byte) (value >>> 8);
+            buf[at + 3] = (byte) value;
+        }
+
+        public void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        public void writeBoolean(boolean b) {
+            writeByte(b ? 1 : 0);
+        }
+
+        public void writeInt(int value) {
+            int v = (value << 1) ^ (value >> 31);
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        public void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (value >>> shift);
+            }
+        }
+
+        public void writeString(String s) {
+            if (s == null) {
+                writeInt(-1);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        public void writeBytes(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, buf, pos, length);
+            pos += length;
+        }
+
+        public void reset() {
+            pos = 0;
+        }
+
+        // The bytes written between the two positions, without copying.
+        public ByteBuffer view(int from, int to) {
+            return ByteBuffer.wrap(buf, from, to - from);
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+    }
+
+    public static final class Reader {
+        private final byte[] data;
+        private final int limit;
+        private int pos;
+
+        public Reader(byte[] data, int offset, int length) {
+            this.data = data;
+            this.pos = offset;
+            this.limit = offset + length;
+        }
+
+        public boolean hasRemaining() {
+            return pos < limit;
+        }
+
+        public byte readByte() throws IOException {
+            if (pos >= limit) {
+                throw new IOException("Truncated frame");
+            }
+            return data[pos++];
+        }
+
+        public boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        public int readInt() throws IOException {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = readByte();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (v >>> 1) ^ -(v & 1);
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        public int readCount() throws IOException {
+            int n = readInt();
+            if (n < 0 || n > limit - pos) {
+                throw new IOException("Invalid count: " + n);
+            }
+            return n;
+        }
+
+        public long readLong() throws IOException {
+            long v = 0;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | (readByte() & 0xFF);
+            }
+            return v;
+        }
+
+        public String readString() throws IOException {
+            int length = readInt();
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0 || length > limit - pos) {
+                throw new IOException("Invalid string length: " + length);
+            }
+            String s = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package iskahoot.net;
+
+import java.io.IOException;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// A message encoded at most once per wire layout and then shared by every recipient.
+// Connections get independent read-only views over the same frame bytes.
+public final class EncodedMessage {
+    // Length prefix and the serialization stream header in front of the object.
+    private static final int OBJECT_OFFSET = MessageCodec.HEADER_SIZE + 4;
+    private final Message message;
+    private byte[] serialized;
+    private byte[] binary;
+    // Boards for binary peers older than RANKED_BOARD_VERSION.
+    private byte[] plainBinary;
+
+    public EncodedMessage(Message message) {
+        this.message = message;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    // version is the peer's negotiated BinaryCodec version.
+    public ByteBuffer frame(int version) {
+        return ByteBuffer.wrap(bytes(version)).asReadOnlyBuffer();
+    }
+
+    public void writeTo(OutputStream out, int version) throws IOException {
+        out.write(bytes(version));
+    }
+
+    // For legacy clients holding one ObjectOutputStream for the whole connection: the
+    // object as that stream would write it right after a reset, then the reset itself.
+    public void writeObjectTo(OutputStream out) throws IOException {
+        byte[] frame = bytes(0);
+        out.write(frame, OBJECT_OFFSET, frame.length - OBJECT_OFFSET);
+        out.write(ObjectStreamConstants.TC_RESET);
+    }
+
+    private synchronized byte[] bytes(int version) {
+        if (WireFormat.forVersion(version) == WireFormat.SERIALIZED) {
+            if (serialized == null) {
+                serialized = MessageCodec.encodeFrame(message, WireFormat.SERIALIZED);
+            }
+            return serialized;
+        }
+        if (version < BinaryCodec.RANKED_BOARD_VERSION && message instanceof ScoreBoardMessage) {
+            if (plainBinary == null) {
+                plainBinary = MessageCodec.encodeFrame(message, WireFormat.BINARY, version);
+            }
+            return plainBinary;
+        }
+        if (binary == null) {
+            binary = MessageCodec.encodeFrame(message, WireFormat.BINARY);
+        }
+        return binary;
+    }
+}
@@ -0,0 +1,13 @@
+package iskahoot.net;
+
+// Sent by the server on idle connections and echoed back by the client, so both sides
+// can tell a quiet peer from a dead one.
+public class HeartbeatMessage extends Message {
+    private final long sentAt;
+
+    public HeartbeatMessage(long sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public long getSentAt() { return sentAt; }
+}
@@ -1,17 +1,36 @@
 package iskahoot.net;
 
 public class JoinRequest extends Message {
+    // Object-stream clients from before protocol negotiation still join with this class.
+    private static final long serialVersionUID = -2211727071715845109L;
+
     private final String username;
     private final String teamName;
     private final String gameCode;
+    private final int protocolVersion;
+    private final String resumeToken;
 
     public JoinRequest(String username, String teamName, String gameCode) {
+        this(username, teamName, gameCode, 0);
+    }
+
+    public JoinRequest(String username, String teamName, String gameCode, int protocolVersion) {
+        this(username, teamName, gameCode, protocolVersion, null);
+    }
+
+    public JoinRequest(String username, String teamName, String gameCode, int protocolVersion, String resumeToken) {
         this.username = username;
         this.teamName = teamName;
         this.gameCode = gameCode;
+        this.protocolVersion = protocolVersion;
+        this.resumeToken = resumeToken;
     }
 
     public String getUsername() { return username; }
     public String getTeamName() { return teamName; }
     public String getGameCode() { return gameCode; }
+    // Highest BinaryCodec version the client speaks; 0 means Java serialization only.
+    public int getProtocolVersion() { return protocolVersion; }
+    // Token from an earlier JoinResponse; asks to take back that seat instead of joining anew.
+    public String getResumeToken() { return resumeToken; }
 }
@@ -1,14 +1,31 @@
 package iskahoot.net;
 
 public class JoinResponse extends Message {
+    // Unchanged from before protocol negotiation, so object-stream clients can read it.
+    private static final long serialVersionUID = 5732179820706196311L;
+
     private final boolean success;
     private final String message;
+    private final int protocolVersion;
+    private final String resumeToken;
 
     public JoinResponse(boolean success, String message) {
+        this(success, message, 0);
+    }
+
+    public JoinResponse(boolean success, String message, int protocolVersion) {
+        this(success, message, protocolVersion, null);
+    }
+
+    public JoinResponse(boolean success, String message, int protocolVersion, String resumeToken) {
         this.success = success;
         this.message = message;
+        this.protocolVersion = protocolVersion;
+        this.resumeToken = resumeToken;
     }
 
     public boolean isSuccess() { return success; }
     public String getMessage() { return message; }
+    public int getProtocolVersion() { return protocolVersion; }
+    public String getResumeToken() { return resumeToken; }
 }
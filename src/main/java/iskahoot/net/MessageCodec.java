@@ -0,0 +1,85 @@
+package iskahoot.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.nio.ByteBuffer;
+
+// Length-prefixed frames: [int length][payload]. A payload is either a Java-serialized
+// message (starts with the stream magic 0xAC) or a BinaryCodec message (starts with its
+// tag), so frames can be decoded without knowing what the peer negotiated.
+public final class MessageCodec {
+    public static final int HEADER_SIZE = 4;
+    public static final int MAX_FRAME_SIZE = 1 << 20;
+    public static final int SERIALIZED_MARKER = (ObjectStreamConstants.STREAM_MAGIC >>> 8) & 0xFF;
+
+    private MessageCodec() {
+    }
+
+    public static byte[] encodeFrame(Message msg, WireFormat format) {
+        return encodeFrame(msg, format, BinaryCodec.VERSION);
+    }
+
+    // version is the peer's negotiated BinaryCodec version; serialized frames ignore it.
+    public static byte[] encodeFrame(Message msg, WireFormat format, int version) {
+        if (format == WireFormat.BINARY) {
+            BinaryCodec.Writer w = new BinaryCodec.Writer(64);
+            w.skip(HEADER_SIZE);
+            BinaryCodec.encode(msg, w, version);
+            w.putInt(0, w.position() - HEADER_SIZE);
+            return w.toByteArray();
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            bytes.write(new byte[HEADER_SIZE]);
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(msg);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode " + msg.getClass().getSimpleName(), e);
+        }
+        byte[] frame = bytes.toByteArray();
+        ByteBuffer.wrap(frame).putInt(0, frame.length - HEADER_SIZE);
+        return frame;
+    }
+
+    public static Message decode(byte[] data, int offset, int length) throws IOException {
+        if ((data[offset] & 0xFF) != SERIALIZED_MARKER) {
+            return BinaryCodec.decode(data, offset, length);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data, offset, length))) {
+            Object obj = in.readObject();
+            if (!(obj instanceof Message)) {
+                throw new IOException("Unexpected object in frame: " + obj);
+            }
+            return (Message) obj;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown message class", e);
+        }
+    }
+
+    public static void writeFrame(DataOutputStream out, Message msg, WireFormat format) throws IOException {
+        out.write(encodeFrame(msg, format));
+        out.flush();
+    }
+
+    public static Message readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        checkLength(length);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return decode(payload, 0, length);
+    }
+
+    public static void checkLength(int length) throws IOException {
+        if (length <= 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package iskahoot.net;
+
+import iskahoot.model.Question;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// Binary-encoded question bodies shared by every game that asks the same question.
+// Entries are keyed by bank version, question id and the codec version the body is
+// encoded for, and evicted in least-recently-used order once the cached bytes exceed
+// the budget.
+public final class QuestionBodyCache {
+    private static final QuestionBodyCache SHARED = new QuestionBodyCache(
+            Long.getLong("iskahoot.questionCache.maxBytes", 4L * 1024 * 1024));
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public QuestionBodyCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static QuestionBodyCache shared() {
+        return SHARED;
+    }
+
+    // encoder must produce the body layout of codecVersion. Questions that did not come
+    // from a bank have no stable identity and are not cached.
+    public byte[] body(Question q, int codecVersion, Function<Question, byte[]> encoder) {
+        if (q.getBankId() < 0) {
+            return encoder.apply(q);
+        }
+        Key key = new Key(q.getBankVersion(), q.getBankId(), codecVersion);
+        synchronized (this) {
+            byte[] body = entries.get(key);
+            if (body != null) {
+                hits++;
+                return body;
+            }
+            misses++;
+        }
+        // Encoded outside the lock; two games missing at once both encode, which is harmless.
+        byte[] body = encoder.apply(q);
+        synchronized (this) {
+            if (entries.put(key, body) == null) {
+                bytes += body.length;
+            }
+            Iterator<byte[]> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().length;
+                eldest.remove();
+                evictions++;
+            }
+        }
+        return body;
+    }
+
+    public synchronized String describe() {
+        long lookups = hits + misses;
+        return String.format("question cache: %d entries, %d KB of %d KB, %d hits / %d lookups (%.1f%%), %d evictions",
+                entries.size(), bytes / 1024, maxBytes / 1024, hits, lookups,
+                lookups == 0 ? 0.0 : hits * 100.0 / lookups, evictions);
+    }
+
+    private static final class Key {
+        private final int bankVersion;
+        private final int questionId;
+        private final int codecVersion;
+
+        Key(int bankVersion, int questionId, int codecVersion) {
+            this.bankVersion = bankVersion;
+            this.questionId = questionId;
+            this.codecVersion = codecVersion;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return bankVersion == other.bankVersion && questionId == other.questionId
+                    && codecVersion == other.codecVersion;
+        }
+
+        @Override
+        public int hashCode() {
+            return (bankVersion * 31 + questionId) * 31 + codecVersion;
+        }
+    }
+}
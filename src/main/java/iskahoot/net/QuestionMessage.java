@@ -3,17 +3,28 @@ package iskahoot.net;
 import iskahoot.model.Question;
 
 public class QuestionMessage extends Message {
+    // remainingMillis was added compatibly; object-stream clients still read this class.
+    private static final long serialVersionUID = -6254644570122766574L;
+
     private final Question question;
     private final int questionIndex;
     private final int totalQuestions;
+    private final long remainingMillis;
 
     public QuestionMessage(Question question, int questionIndex, int totalQuestions) {
+        this(question, questionIndex, totalQuestions, 0);
+    }
+
+    public QuestionMessage(Question question, int questionIndex, int totalQuestions, long remainingMillis) {
         this.question = question;
         this.questionIndex = questionIndex;
         this.totalQuestions = totalQuestions;
+        this.remainingMillis = remainingMillis;
     }
 
     public Question getQuestion() { return question; }
     public int getQuestionIndex() { return questionIndex; }
     public int getTotalQuestions() { return totalQuestions; }
+    // Time left to answer; 0 when the sender did not say.
+    public long getRemainingMillis() { return remainingMillis; }
 }
@@ -0,0 +1,20 @@
+package iskahoot.net;
+
+import iskahoot.model.ScoreBoardDelta;
+
+// Applies only on top of the board with baseVersion; anything else needs a keyframe.
+public class ScoreBoardDeltaMessage extends Message {
+    private final long version;
+    private final long baseVersion;
+    private final ScoreBoardDelta delta;
+
+    public ScoreBoardDeltaMessage(long version, long baseVersion, ScoreBoardDelta delta) {
+        this.version = version;
+        this.baseVersion = baseVersion;
+        this.delta = delta;
+    }
+
+    public long getVersion() { return version; }
+    public long getBaseVersion() { return baseVersion; }
+    public ScoreBoardDelta getDelta() { return delta; }
+}
@@ -3,14 +3,33 @@ package iskahoot.net;
 import iskahoot.model.ScoreBoard;
 
 public class ScoreBoardMessage extends Message {
+    // Unchanged from before boards were versioned, so serialized clients still read them.
+    private static final long serialVersionUID = -7481026987675948603L;
+
     private final ScoreBoard scoreBoard;
     private final boolean isFinal;
+    // Non-zero when this board is a keyframe that later deltas build on.
+    private final long version;
+    // Sent in answer to a full board request rather than at the end of a round.
+    private final boolean reply;
 
     public ScoreBoardMessage(ScoreBoard scoreBoard, boolean isFinal) {
+        this(scoreBoard, isFinal, 0);
+    }
+
+    public ScoreBoardMessage(ScoreBoard scoreBoard, boolean isFinal, long version) {
+        this(scoreBoard, isFinal, version, false);
+    }
+
+    public ScoreBoardMessage(ScoreBoard scoreBoard, boolean isFinal, long version, boolean reply) {
         this.scoreBoard = scoreBoard;
         this.isFinal = isFinal;
+        this.version = version;
+        this.reply = reply;
     }
 
     public ScoreBoard getScoreBoard() { return scoreBoard; }
     public boolean isFinal() { return isFinal; }
+    public long getVersion() { return version; }
+    public boolean isReply() { return reply; }
 }
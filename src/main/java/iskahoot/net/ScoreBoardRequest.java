@@ -0,0 +1,17 @@
+package iskahoot.net;
+
+// Asks the server for the full scoreboard instead of the top-K view, or, with
+// keyframe set, for the current round board so a client can resync its deltas.
+public class ScoreBoardRequest extends Message {
+    private final boolean keyframe;
+
+    public ScoreBoardRequest() {
+        this(false);
+    }
+
+    public ScoreBoardRequest(boolean keyframe) {
+        this.keyframe = keyframe;
+    }
+
+    public boolean isKeyframe() { return keyframe; }
+}
@@ -0,0 +1,13 @@
+package iskahoot.net;
+
+import iskahoot.model.PlayerStanding;
+
+public class StandingMessage extends Message {
+    private final PlayerStanding standing;
+
+    public StandingMessage(PlayerStanding standing) {
+        this.standing = standing;
+    }
+
+    public PlayerStanding getStanding() { return standing; }
+}
@@ -0,0 +1,11 @@
+package iskahoot.net;
+
+public enum WireFormat {
+    SERIALIZED,
+    BINARY;
+
+    // Version 0 is a peer that only speaks Java serialization.
+    public static WireFormat forVersion(int version) {
+        return version >= 1 ? BINARY : SERIALIZED;
+    }
+}
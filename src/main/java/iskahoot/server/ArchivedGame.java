@@ -0,0 +1,88 @@
+package iskahoot.server;
+
+import iskahoot.model.PlayerSnapshot;
+import iskahoot.model.ScoreBoard;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+// Final results of a game in a compact form: names and scores in rank order, with
+// nothing that keeps the GameState, its connections or its questions reachable.
+public final class ArchivedGame {
+    private final String gameCode;
+    private final long endedAt;
+    private final int totalQuestions;
+    private final int questionBankVersion;
+    private final String[] playerNames;
+    private final int[] playerScores;
+    private final String[] teamNames;
+    private final int[] teamScores;
+
+    private ArchivedGame(String gameCode, long endedAt, int totalQuestions, int questionBankVersion,
+            String[] playerNames, int[] playerScores, String[] teamNames, int[] teamScores) {
+        this.gameCode = gameCode;
+        this.endedAt = endedAt;
+        this.totalQuestions = totalQuestions;
+        this.questionBankVersion = questionBankVersion;
+        this.playerNames = playerNames;
+        this.playerScores = playerScores;
+        this.teamNames = teamNames;
+        this.teamScores = teamScores;
+    }
+
+    public static ArchivedGame of(String gameCode, int questionBankVersion, ScoreBoard finalBoard) {
+        List<PlayerSnapshot> players = finalBoard.getPlayers();
+        String[] names = new String[players.size()];
+        int[] scores = new int[players.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = players.get(i).getUsername();
+            scores[i] = players.get(i).getScore();
+        }
+        Map<String, Integer> teams = finalBoard.getTeamScores();
+        String[] teamNames = new String[teams.size()];
+        int[] teamScores = new int[teams.size()];
+        int t = 0;
+        for (Map.Entry<String, Integer> entry : teams.entrySet()) {
+            teamNames[t] = entry.getKey();
+            teamScores[t++] = entry.getValue();
+        }
+        return new ArchivedGame(gameCode, finalBoard.getTimestamp(), finalBoard.getTotalQuestions(),
+                questionBankVersion, names, scores, teamNames, teamScores);
+    }
+
+    public String getGameCode() {
+        return gameCode;
+    }
+
+    public long getEndedAt() {
+        return endedAt;
+    }
+
+    public int getPlayerCount() {
+        return playerNames.length;
+    }
+
+    public String getWinningTeam() {
+        return teamNames.length > 0 ? teamNames[0] : null;
+    }
+
+    public String summary() {
+        String when = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(endedAt));
+        return String.format("Game %s ended %s: %d players, %d questions (v%d), winner %s",
+                gameCode, when, playerNames.length, totalQuestions, questionBankVersion,
+                getWinningTeam() == null ? "-" : getWinningTeam() + " (" + teamScores[0] + ")");
+    }
+
+    public String format() {
+        StringBuilder sb = new StringBuilder(summary()).append('\n');
+        for (int t = 0; t < teamNames.length; t++) {
+            sb.append(String.format("  %d. %s - %d points\n", t + 1, teamNames[t], teamScores[t]));
+        }
+        for (int i = 0; i < playerNames.length; i++) {
+            sb.append(String.format("    %d. %s (%d)\n", i + 1, playerNames[i], playerScores[i]));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,26 @@
+package iskahoot.server;
+
+import iskahoot.net.EncodedMessage;
+import iskahoot.net.Message;
+
+public interface ClientConnection {
+    void send(EncodedMessage msg);
+
+    default void send(Message msg) {
+        send(new EncodedMessage(msg));
+    }
+
+    // BinaryCodec version agreed in the join handshake; it fixes the format and layout of
+    // outgoing frames. 0 means the peer only speaks Java serialization.
+    void setProtocolVersion(int version);
+
+    int getProtocolVersion();
+
+    OutboundQueue getOutboundQueue();
+
+    // Closes once queued messages are written.
+    void close();
+
+    // Closes right away, dropping anything still queued.
+    void abort();
+}
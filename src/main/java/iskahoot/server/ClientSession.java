@@ -0,0 +1,131 @@
+package iskahoot.server;
+
+import iskahoot.net.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Protocol logic shared by every transport: the first message must be a JoinRequest,
+// everything after that is forwarded to the joined game. Transports call disconnected()
+// once when the connection goes away, whatever the reason.
+public class ClientSession {
+    private final Server server;
+    private final ClientConnection connection;
+    private GameState game;
+    private int slot = -1;
+    private volatile boolean greeted = false;
+    private volatile boolean heartbeats = false;
+    private volatile long lastReceived = System.nanoTime();
+    private final AtomicBoolean disconnected = new AtomicBoolean(false);
+
+    public ClientSession(Server server, ClientConnection connection) {
+        this.server = server;
+        this.connection = connection;
+        server.getHeartbeatMonitor().register(this);
+    }
+
+    // Returns false when the connection should be closed.
+    public boolean handleMessage(Message msg) {
+        lastReceived = System.nanoTime();
+        if (!greeted) {
+            greeted = true;
+            if (msg instanceof JoinRequest) {
+                handleJoin((JoinRequest) msg);
+                return true;
+            }
+            connection.send(new JoinResponse(false, "Invalid initial message."));
+            return false;
+        }
+
+        if (msg instanceof HeartbeatMessage) {
+            return true;
+        } else if (msg instanceof AnswerMessage) {
+            handleAnswer((AnswerMessage) msg);
+        } else if (msg instanceof ScoreBoardRequest && game != null) {
+            if (((ScoreBoardRequest) msg).isKeyframe()) {
+                game.sendKeyframe(slot);
+            } else {
+                game.sendFullScoreBoard(slot);
+            }
+        }
+        return true;
+    }
+
+    private void handleJoin(JoinRequest req) {
+        int version = Math.min(req.getProtocolVersion(), BinaryCodec.VERSION);
+        connection.setProtocolVersion(version);
+        heartbeats = version >= BinaryCodec.HEARTBEAT_VERSION;
+
+        GameState g = server.getGame(req.getGameCode());
+        if (g == null) {
+            connection.send(new JoinResponse(false, "Game not found.", version));
+            return;
+        }
+
+        String token = req.getResumeToken();
+        if (token != null) {
+            JoinResponse accepted = new JoinResponse(true, "Resumed game " + req.getGameCode(), version, token);
+            int resumedSlot = g.resumePlayer(token, connection, accepted);
+            if (resumedSlot >= 0) {
+                this.game = g;
+                this.slot = resumedSlot;
+                return;
+            }
+            if (g.isGameStarted()) {
+                connection.send(new JoinResponse(false, "Session expired.", version));
+                return;
+            }
+        }
+
+        if (g.isGameStarted()) {
+            connection.send(new JoinResponse(false, "Game already started.", version));
+            return;
+        }
+
+        int joinedSlot = g.addPlayer(req.getUsername(), req.getTeamName(), connection);
+        if (joinedSlot >= 0) {
+            this.game = g;
+            this.slot = joinedSlot;
+            connection.send(new JoinResponse(true, "Joined game " + req.getGameCode(), version,
+                    g.getResumeToken(joinedSlot)));
+            System.out.println("Player " + req.getUsername() + " joined game " + req.getGameCode());
+        } else {
+            connection.send(new JoinResponse(false, "Could not join game (Duplicate name?).", version));
+        }
+    }
+
+    public void disconnected() {
+        if (!disconnected.compareAndSet(false, true))
+            return;
+        server.getHeartbeatMonitor().unregister(this);
+        if (game != null) {
+            game.playerDisconnected(slot, connection);
+        }
+    }
+
+    // Idle timeouts apply before the join and to clients that answer heartbeats.
+    boolean isMonitored() {
+        return !greeted || heartbeats;
+    }
+
+    boolean usesHeartbeats() {
+        return heartbeats;
+    }
+
+    long idleMillis() {
+        return (System.nanoTime() - lastReceived) / 1_000_000;
+    }
+
+    void send(EncodedMessage msg) {
+        connection.send(msg);
+    }
+
+    void abort() {
+        connection.abort();
+    }
+
+    private void handleAnswer(AnswerMessage msg) {
+        if (game != null) {
+            game.submitAnswer(slot, msg.getAnswerIndex());
+        }
+    }
+}
@@ -1,47 +1,72 @@
 package iskahoot.server;
 
 import iskahoot.net.*;
-import iskahoot.model.Player;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
 import java.net.Socket;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class DealWithClient implements Runnable {
+public class DealWithClient implements Runnable, ClientConnection {
     private final Socket socket;
     private final Server server;
-    private ObjectOutputStream out;
+    private final Executor writers;
+    private final OutboundQueue outbound;
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    // Legacy clients open plain object streams; everyone else sends MessageCodec frames.
+    // Both are written to framedOut; legacy messages go out as cached serialized bytes.
+    private boolean legacy;
     private ObjectInputStream in;
-    private GameState game;
-    private Player player;
-    private boolean running = true;
+    private DataOutputStream framedOut;
+    private DataInputStream framedIn;
+    private volatile int version = 0;
+    private volatile boolean running = true;
+    private volatile boolean closing = false;
+    private ClientSession session;
 
-    public DealWithClient(Socket socket, Server server) {
+    public DealWithClient(Socket socket, Server server, Executor writers) {
         this.socket = socket;
         this.server = server;
+        this.writers = writers;
+        this.outbound = server.newOutboundQueue();
     }
 
     @Override
     public void run() {
         try {
-            out = new ObjectOutputStream(socket.getOutputStream());
-            in = new ObjectInputStream(socket.getInputStream());
+            InputStream raw = new BufferedInputStream(socket.getInputStream());
+            raw.mark(1);
+            int first = raw.read();
+            raw.reset();
+            if (first == -1) {
+                return;
+            }
 
-            Object msg = in.readObject();
-            if (msg instanceof JoinRequest) {
-                handleJoin((JoinRequest) msg);
+            if (first == MessageCodec.SERIALIZED_MARKER) {
+                legacy = true;
+                framedOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                framedOut.writeShort(ObjectStreamConstants.STREAM_MAGIC);
+                framedOut.writeShort(ObjectStreamConstants.STREAM_VERSION);
+                framedOut.flush();
+                in = new ObjectInputStream(raw);
             } else {
-                send(new JoinResponse(false, "Invalid initial message."));
-                close();
-                return;
+                framedOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                framedIn = new DataInputStream(raw);
             }
+            session = new ClientSession(server, this);
 
             while (running && !socket.isClosed()) {
                 try {
-                    Object obj = in.readObject();
-                    if (obj instanceof AnswerMessage) {
-                        handleAnswer((AnswerMessage) obj);
+                    Object obj = in != null ? in.readObject() : MessageCodec.readFrame(framedIn);
+                    if (obj instanceof Message && !session.handleMessage((Message) obj)) {
+                        running = false;
                     }
                 } catch (IOException e) {
                     running = false;
@@ -52,50 +77,88 @@ public class DealWithClient implements Runnable {
             e.printStackTrace();
         } finally {
             close();
+            if (session != null) {
+                session.disconnected();
+            }
         }
     }
 
-    private void handleJoin(JoinRequest req) throws IOException {
-        GameState g = server.getGame(req.getGameCode());
-        if (g == null) {
-            send(new JoinResponse(false, "Game not found."));
+    // Never blocks the caller: messages are queued and written by a pooled writer task.
+    @Override
+    public void send(EncodedMessage msg) {
+        if (closing)
             return;
-        }
-
-        if (g.isGameStarted()) {
-            send(new JoinResponse(false, "Game already started."));
+        if (!outbound.offer(msg)) {
+            System.out.println("Dropping client: outbound queue overflow (" + outbound.describe() + ")");
+            abort();
             return;
         }
+        scheduleDrain();
+    }
 
-        boolean added = g.addPlayer(req.getUsername(), req.getTeamName(), this);
-        if (added) {
-            this.game = g;
-            this.player = new Player(req.getUsername());
-            send(new JoinResponse(true, "Joined game " + req.getGameCode()));
-            System.out.println("Player " + req.getUsername() + " joined game " + req.getGameCode());
-        } else {
-            send(new JoinResponse(false, "Could not join game (Duplicate name?)."));
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            writers.execute(this::drain);
         }
     }
 
-    private void handleAnswer(AnswerMessage msg) {
-        if (game != null) {
-            game.submitAnswer(player.getUsername(), msg.getAnswerIndex());
+    private void drain() {
+        do {
+            OutboundQueue.Entry entry;
+            while ((entry = outbound.poll()) != null) {
+                try {
+                    write(entry.getMessage());
+                    outbound.completed(entry);
+                } catch (IOException e) {
+                    abort();
+                    return;
+                }
+            }
+            draining.set(false);
+        } while (!outbound.isEmpty() && draining.compareAndSet(false, true));
+
+        if (closing && outbound.isEmpty()) {
+            abort();
         }
     }
 
-    public synchronized void send(Message msg) {
-        try {
-            out.writeObject(msg);
-            out.flush();
-            out.reset();
-        } catch (IOException e) {
-            running = false;
+    private void write(EncodedMessage msg) throws IOException {
+        if (legacy) {
+            msg.writeObjectTo(framedOut);
+        } else {
+            msg.writeTo(framedOut, version);
         }
+        framedOut.flush();
+    }
+
+    @Override
+    public void setProtocolVersion(int version) {
+        this.version = version;
     }
 
-    private void close() {
+    @Override
+    public int getProtocolVersion() {
+        return version;
+    }
+
+    @Override
+    public OutboundQueue getOutboundQueue() {
+        return outbound;
+    }
+
+    // Closes once everything already queued has been written.
+    @Override
+    public void close() {
+        running = false;
+        closing = true;
+        scheduleDrain();
+    }
+
+    @Override
+    public void abort() {
         running = false;
+        closing = true;
+        outbound.clear();
         try {
             if (socket != null)
                 socket.close();
@@ -0,0 +1,70 @@
+package iskahoot.server;
+
+import java.util.Random;
+
+// Hands out game codes from a fixed range without collisions. Free codes occupy the
+// first `free` cells of the pool; allocating swaps a random free code to the end of
+// that region and releasing swaps it back, so both are O(1) and codes stay hard to guess.
+public class GameCodeAllocator {
+    private final int first;
+    private final int[] pool;
+    // Where each code currently sits in the pool, indexed by code - first.
+    private final int[] positions;
+    private final Random random = new Random();
+    private int free;
+
+    public GameCodeAllocator(int first, int last) {
+        this.first = first;
+        this.pool = new int[last - first + 1];
+        this.positions = new int[pool.length];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = first + i;
+            positions[i] = i;
+        }
+        this.free = pool.length;
+    }
+
+    // Returns a code nobody else holds, or -1 when the range is exhausted.
+    public synchronized int allocate() {
+        if (free == 0)
+            return -1;
+        int code = pool[random.nextInt(free)];
+        swap(positions[code - first], --free);
+        return code;
+    }
+
+    public synchronized boolean release(int code) {
+        int index = code - first;
+        if (index < 0 || index >= pool.length || positions[index] < free)
+            return false;
+        swap(positions[index], free++);
+        return true;
+    }
+
+    // Takes a particular code, e.g. the one a recovered game already uses. False if it
+    // is outside the range or already held.
+    public synchronized boolean claim(int code) {
+        int index = code - first;
+        if (index < 0 || index >= pool.length || positions[index] >= free)
+            return false;
+        swap(positions[index], --free);
+        return true;
+    }
+
+    public synchronized int inUse() {
+        return pool.length - free;
+    }
+
+    public int capacity() {
+        return pool.length;
+    }
+
+    private void swap(int i, int j) {
+        int a = pool[i];
+        int b = pool[j];
+        pool[i] = b;
+        pool[j] = a;
+        positions[b - first] = i;
+        positions[a - first] = j;
+    }
+}
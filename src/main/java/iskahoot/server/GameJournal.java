@@ -0,0 +1,320 @@
+package iskahoot.server;
+
+import iskahoot.net.BinaryCodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// Append-only journal of game events. Callers only enqueue; one writer thread drains
+// whatever has queued up, writes it as a single batch and then forces it according to
+// the durability level, so the cost of a force is shared by every event in the batch
+// and never paid on the answer path. Segments are rolled once they pass segmentBytes,
+// and after a failed write so nothing lands behind a possibly torn record. On each roll
+// the segments recovery would skip, those before the oldest live checkpoint, are removed.
+//
+// Segment: [MAGIC][VERSION] then records [length][crc32][event], named after the
+// sequence number of their first event.
+//
+// Checkpoints go through the same queue: the writer logs a CHECKPOINT event, so its
+// sequence number orders it against everything else, and once the batch is written
+// replaces checkpoints/<gameCode>.ckpt with
+// [CHECKPOINT_MAGIC][VERSION][seq][time][length][crc32][snapshot].
+public class GameJournal implements Closeable {
+    static final int MAGIC = 0x494B4A4C; // "IKJL"
+    static final int CHECKPOINT_MAGIC = 0x494B4350; // "IKCP"
+    static final int VERSION = 3;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 8;
+    static final int CHECKPOINT_HEADER_SIZE = 32;
+    static final String CHECKPOINT_DIR = "checkpoints";
+    static final String CHECKPOINT_SUFFIX = ".ckpt";
+    private static final int MAX_BATCH = 4096;
+    private static final int DROP_WARN_INTERVAL = 1000;
+    // Queued by close(); everything ahead of it is still written.
+    private static final JournalEvent CLOSE = JournalEvent.gameEnded(null);
+
+    private final Path dir;
+    private final Path checkpointDir;
+    private final JournalDurability durability;
+    private final long segmentBytes;
+    private final long forceIntervalMillis;
+    private final BlockingQueue<JournalEvent> queue;
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    // Writer thread only.
+    private FileChannel channel;
+    private volatile Path segment;
+    private long segmentSize;
+    private long nextSeq;
+    private boolean dirty;
+    private boolean failed;
+    private long lastForce;
+    // Sequence number of each game's checkpoint on disk.
+    private final Map<String, Long> checkpointSeqs = new HashMap<>();
+
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong forces = new AtomicLong();
+    private final AtomicLong removedSegments = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private GameJournal(Path dir, JournalDurability durability, long segmentBytes, long forceIntervalMillis,
+            int capacity, long nextSeq) {
+        this.dir = dir;
+        this.checkpointDir = dir.resolve(CHECKPOINT_DIR);
+        this.durability = durability;
+        this.segmentBytes = segmentBytes;
+        this.forceIntervalMillis = forceIntervalMillis;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.nextSeq = nextSeq;
+        this.writer = new Thread(this::run, "game-journal");
+        this.writer.setDaemon(true);
+    }
+
+    // Continues the sequence of whatever is already in the directory, in a new segment.
+    public static GameJournal open(Path dir, JournalDurability durability, long segmentBytes,
+            long forceIntervalMillis, int capacity) throws IOException {
+        Files.createDirectories(dir.resolve(CHECKPOINT_DIR));
+        GameJournal journal = new GameJournal(dir, durability, segmentBytes, forceIntervalMillis, capacity,
+                JournalReader.nextSeq(dir));
+        for (JournalEvent checkpoint : JournalReader.checkpoints(dir)) {
+            journal.checkpointSeqs.put(checkpoint.getGameCode(), checkpoint.getSeq());
+        }
+        journal.writer.start();
+        return journal;
+    }
+
+    // Never blocks: callers are on the answer and scoring path. If the writer has fallen
+    // a whole queue behind the disk the event is dropped and counted, and recovery of
+    // that game may come back short of it.
+    public void append(JournalEvent event) {
+        if (closed)
+            return;
+        if (!queue.offer(event)) {
+            long n = dropped.incrementAndGet();
+            if (n == 1 || n % DROP_WARN_INTERVAL == 0) {
+                System.err.println("Journal queue full, " + n + " events dropped so far (last from game "
+                        + event.getGameCode() + ")");
+            }
+        }
+    }
+
+    // Replaces the game's checkpoint with this snapshot, or removes it when null.
+    public void checkpoint(String gameCode, byte[] snapshot) {
+        append(JournalEvent.checkpoint(gameCode, snapshot));
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    public String describe() {
+        long n = batches.get();
+        return String.format(
+                "journal %s (%s): %d events in %d batches (%.1f per batch), %d forces, %d queued, %d dropped, %d segments removed",
+                segment == null ? dir : segment, durability, events.get(), n,
+                n == 0 ? 0.0 : (double) events.get() / n, forces.get(), queue.size(), dropped.get(),
+                removedSegments.get());
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            queue.put(CLOSE);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<JournalEvent> batch = new ArrayList<>();
+        BinaryCodec.Writer w = new BinaryCodec.Writer(64 * 1024);
+        CRC32 crc = new CRC32();
+        boolean stop = false;
+        while (!stop) {
+            try {
+                JournalEvent first;
+                if (dirty && durability == JournalDurability.PERIODIC) {
+                    // Nothing new within the interval: force what is already written.
+                    first = queue.poll(forceIntervalMillis, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        force();
+                        continue;
+                    }
+                } else {
+                    first = queue.take();
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                if (batch.remove(CLOSE)) {
+                    stop = true;
+                    queue.drainTo(batch);
+                }
+                if (!batch.isEmpty()) {
+                    writeBatch(batch, w, crc);
+                }
+            } catch (InterruptedException e) {
+                // Only close() stops the writer.
+            } catch (IOException e) {
+                failed = true;
+                System.err.println("Journal write failed, " + batch.size() + " events lost: " + e.getMessage());
+            }
+            batch.clear();
+        }
+        try {
+            if (channel != null) {
+                if (durability != JournalDurability.OS) {
+                    force();
+                }
+                channel.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeBatch(List<JournalEvent> batch, BinaryCodec.Writer w, CRC32 crc) throws IOException {
+        if (channel == null || failed || segmentSize >= segmentBytes) {
+            roll();
+        }
+        w.reset();
+        for (JournalEvent event : batch) {
+            event.setSeq(nextSeq++);
+            int start = w.position();
+            w.skip(RECORD_HEADER_SIZE);
+            event.encode(w);
+            crc.reset();
+            crc.update(w.view(start + RECORD_HEADER_SIZE, w.position()));
+            w.putInt(start, w.position() - start - RECORD_HEADER_SIZE);
+            w.putInt(start + 4, (int) crc.getValue());
+        }
+        ByteBuffer bytes = w.view(0, w.position());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        segmentSize += w.position();
+        dirty = true;
+        events.addAndGet(batch.size());
+        batches.incrementAndGet();
+
+        if (durability == JournalDurability.BATCH
+                || (durability == JournalDurability.PERIODIC
+                        && System.currentTimeMillis() - lastForce >= forceIntervalMillis)) {
+            force();
+        }
+
+        for (JournalEvent event : batch) {
+            if (event.getType() == JournalEvent.Type.CHECKPOINT) {
+                try {
+                    writeCheckpoint(event);
+                } catch (IOException e) {
+                    System.err.println("Checkpoint of game " + event.getGameCode() + " failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Written beside the final name and moved over it, so a crash leaves either the old
+    // checkpoint or the new one.
+    private void writeCheckpoint(JournalEvent event) throws IOException {
+        Path target = checkpointDir.resolve(event.getGameCode() + CHECKPOINT_SUFFIX);
+        byte[] snapshot = event.getSnapshot();
+        if (snapshot == null) {
+            Files.deleteIfExists(target);
+            checkpointSeqs.remove(event.getGameCode());
+            return;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(snapshot, 0, snapshot.length);
+        ByteBuffer buf = ByteBuffer.allocate(CHECKPOINT_HEADER_SIZE + snapshot.length);
+        buf.putInt(CHECKPOINT_MAGIC).putInt(VERSION).putLong(event.getSeq()).putLong(event.getTime())
+                .putInt(snapshot.length).putInt((int) crc.getValue()).put(snapshot).flip();
+        Path tmp = checkpointDir.resolve(event.getGameCode() + CHECKPOINT_SUFFIX + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            if (durability != JournalDurability.OS) {
+                out.force(false);
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointSeqs.put(event.getGameCode(), event.getSeq());
+    }
+
+    private void force() throws IOException {
+        if (!dirty || channel == null)
+            return;
+        channel.force(false);
+        dirty = false;
+        lastForce = System.currentTimeMillis();
+        forces.incrementAndGet();
+    }
+
+    private void roll() throws IOException {
+        if (channel != null) {
+            // A segment whose last write failed is left as it is; the reader stops at its torn tail.
+            try {
+                if (!failed && durability != JournalDurability.OS) {
+                    force();
+                }
+            } finally {
+                FileChannel old = channel;
+                channel = null;
+                dirty = false;
+                old.close();
+            }
+        }
+        segment = dir.resolve(JournalReader.segmentName(nextSeq));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        segmentSize = HEADER_SIZE;
+        dirty = true;
+        failed = false;
+        removeOldSegments();
+    }
+
+    // Recovery starts at the segment holding the oldest live checkpoint, or at the newest
+    // segment when there is none, so everything before that is never read again.
+    private void removeOldSegments() {
+        long keepFrom = nextSeq;
+        for (long seq : checkpointSeqs.values()) {
+            keepFrom = Math.min(keepFrom, seq);
+        }
+        try {
+            List<Path> all = JournalReader.segments(dir);
+            for (int i = 0; i + 1 < all.size() && JournalReader.firstSeq(all.get(i + 1)) <= keepFrom; i++) {
+                Files.deleteIfExists(all.get(i));
+                removedSegments.incrementAndGet();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not remove old journal segments: " + e.getMessage());
+        }
+    }
+}
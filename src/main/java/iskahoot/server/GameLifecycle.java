@@ -0,0 +1,9 @@
+package iskahoot.server;
+
+// Where a game is in the registry, as opposed to GamePhase which tracks the rounds.
+// Ended games are archived and then evicted; so are lobbies nobody is waiting in.
+public enum GameLifecycle {
+    LOBBY,
+    RUNNING,
+    ENDED
+}
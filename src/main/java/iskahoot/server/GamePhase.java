@@ -0,0 +1,9 @@
+package iskahoot.server;
+
+public enum GamePhase {
+    LOBBY,
+    QUESTION_OPEN,
+    SCORING,
+    SCOREBOARD_PAUSE,
+    ENDED
+}
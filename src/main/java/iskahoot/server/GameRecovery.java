@@ -0,0 +1,113 @@
+package iskahoot.server;
+
+import iskahoot.util.QuestionBank;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Rebuilds the games that were in progress when the server went down: each game starts
+// from its latest checkpoint and then has the journal events written after it replayed.
+// The journal is only read from the oldest checkpoint on, so recovery time depends on
+// the live games and the checkpoint interval, not on how long the journal is.
+public class GameRecovery {
+    private final Path dir;
+    private final QuestionBank bank;
+    private final Map<String, GameState> games = new LinkedHashMap<>();
+    // Sequence number of the checkpoint each game was built from.
+    private final Map<String, Long> checkpointSeqs = new HashMap<>();
+    private final List<String> staleCheckpoints = new ArrayList<>();
+    private int checkpoints;
+    private long replayed;
+    private int tornSegments;
+
+    public GameRecovery(Path dir, QuestionBank bank) {
+        this.dir = dir;
+        this.bank = bank;
+    }
+
+    public List<GameState> recover() throws IOException {
+        long fromSeq = Long.MAX_VALUE;
+        List<String> checkpointed = new ArrayList<>();
+        for (JournalEvent checkpoint : JournalReader.checkpoints(dir)) {
+            String code = checkpoint.getGameCode();
+            checkpointed.add(code);
+            try {
+                GameState game = GameState.fromCheckpoint(checkpoint.getSnapshot(), bank);
+                if (!code.equals(game.getGameCode())) {
+                    throw new IOException("checkpoint is for game " + game.getGameCode());
+                }
+                games.put(code, game);
+                checkpointSeqs.put(code, checkpoint.getSeq());
+                fromSeq = Math.min(fromSeq, checkpoint.getSeq());
+                checkpoints++;
+            } catch (IOException e) {
+                System.err.println("Cannot recover game " + code + ": " + e.getMessage());
+            }
+        }
+
+        // Without checkpoints only the newest segment is read, for games created just
+        // before the crash whose first checkpoint never made it to disk.
+        try (JournalReader reader = new JournalReader(dir, fromSeq)) {
+            JournalEvent event;
+            while ((event = reader.next()) != null) {
+                apply(event);
+            }
+            tornSegments = reader.getTornSegments();
+        }
+
+        for (String code : checkpointed) {
+            if (!games.containsKey(code)) {
+                staleCheckpoints.add(code);
+            }
+        }
+        return new ArrayList<>(games.values());
+    }
+
+    private void apply(JournalEvent event) {
+        String code = event.getGameCode();
+        Long checkpointSeq = checkpointSeqs.get(code);
+        if (checkpointSeq != null && event.getSeq() <= checkpointSeq)
+            return;
+        replayed++;
+        switch (event.getType()) {
+            case GAME_CREATED:
+                try {
+                    games.put(code, GameState.fromCreated(event, bank));
+                } catch (IOException e) {
+                    games.remove(code);
+                    System.err.println("Cannot recover game " + code + ": " + e.getMessage());
+                }
+                break;
+            case GAME_ENDED:
+                games.remove(code);
+                break;
+            case CHECKPOINT:
+                // A dropped checkpoint means the game was closed.
+                if (event.getValue() < 0) {
+                    games.remove(code);
+                }
+                break;
+            default:
+                GameState game = games.get(code);
+                if (game != null) {
+                    game.replay(event);
+                }
+                break;
+        }
+    }
+
+    // Codes whose checkpoint file is still on disk but whose game did not come back.
+    public List<String> getStaleCheckpoints() {
+        return staleCheckpoints;
+    }
+
+    public String describe() {
+        return String.format("%d checkpoints, %d journal events replayed%s", checkpoints, replayed,
+                tornSegments == 0 ? "" : ", " + tornSegments + " torn segments");
+    }
+}
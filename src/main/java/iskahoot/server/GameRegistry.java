@@ -0,0 +1,181 @@
+package iskahoot.server;
+
+import iskahoot.model.ScoreBoard;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Owns every live game and its code. Games move LOBBY -> RUNNING -> ENDED; a periodic
+// sweep evicts ended games and empty lobbies once their TTL has passed, releasing the
+// code for reuse. Final results are kept, in compact form, in a bounded archive, so the
+// memory held depends on the live games rather than on how long the server has run.
+public class GameRegistry {
+    private static final int FIRST_CODE = 1000;
+    private static final int LAST_CODE = 9999;
+
+    private final Map<String, Entry> games = new ConcurrentHashMap<>();
+    private final GameCodeAllocator codes = new GameCodeAllocator(FIRST_CODE, LAST_CODE);
+    // Newest first; guarded by itself.
+    private final Deque<ArchivedGame> archive = new ArrayDeque<>();
+    private final long lobbyTtlMillis;
+    private final long endedTtlMillis;
+    private final int archiveSize;
+
+    private static final class Entry {
+        final GameState game;
+        volatile GameLifecycle lifecycle = GameLifecycle.LOBBY;
+        // For lobbies, the last sweep that found players waiting; for ended games, the end.
+        volatile long lastActive = System.currentTimeMillis();
+
+        Entry(GameState game) {
+            this.game = game;
+        }
+    }
+
+    public GameRegistry(long lobbyTtlMillis, long endedTtlMillis, int archiveSize) {
+        this.lobbyTtlMillis = lobbyTtlMillis;
+        this.endedTtlMillis = endedTtlMillis;
+        this.archiveSize = archiveSize;
+    }
+
+    public void start(ScheduledExecutorService scheduler) {
+        long period = Math.max(100, Math.min(lobbyTtlMillis, endedTtlMillis) / 2);
+        scheduler.scheduleAtFixedRate(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Returns a code no live game uses, or null when all of them are taken.
+    public String allocateCode() {
+        int code = codes.allocate();
+        return code < 0 ? null : String.valueOf(code);
+    }
+
+    public void register(GameState game) {
+        Entry entry = new Entry(game);
+        game.setEndListener(board -> ended(entry, board));
+        games.put(game.getGameCode(), entry);
+    }
+
+    // Registers a game rebuilt after a restart under its old code. False if the code
+    // cannot be had, in which case the game is not registered.
+    public boolean restore(GameState game) {
+        int code;
+        try {
+            code = Integer.parseInt(game.getGameCode());
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (!codes.claim(code))
+            return false;
+        register(game);
+        if (game.isGameStarted()) {
+            started(game);
+        }
+        return true;
+    }
+
+    public GameState get(String gameCode) {
+        Entry entry = games.get(gameCode);
+        return entry == null ? null : entry.game;
+    }
+
+    public void started(GameState game) {
+        Entry entry = games.get(game.getGameCode());
+        if (entry != null && entry.lifecycle == GameLifecycle.LOBBY) {
+            entry.lifecycle = GameLifecycle.RUNNING;
+        }
+    }
+
+    public GameLifecycle lifecycleOf(GameState game) {
+        Entry entry = games.get(game.getGameCode());
+        return entry == null ? null : entry.lifecycle;
+    }
+
+    public List<GameState> games() {
+        List<GameState> result = new ArrayList<>(games.size());
+        for (Entry entry : games.values()) {
+            result.add(entry.game);
+        }
+        return result;
+    }
+
+    public List<ArchivedGame> results() {
+        synchronized (archive) {
+            return new ArrayList<>(archive);
+        }
+    }
+
+    // The latest archived game that used this code; codes are recycled after eviction.
+    public ArchivedGame result(String gameCode) {
+        synchronized (archive) {
+            for (ArchivedGame game : archive) {
+                if (game.getGameCode().equals(gameCode)) {
+                    return game;
+                }
+            }
+        }
+        return null;
+    }
+
+    public String describe() {
+        int archived;
+        synchronized (archive) {
+            archived = archive.size();
+        }
+        return String.format("%d live games, %d/%d codes in use, %d archived results",
+                games.size(), codes.inUse(), codes.capacity(), archived);
+    }
+
+    // Called by the game, under its lock, with the final board.
+    private void ended(Entry entry, ScoreBoard finalBoard) {
+        entry.lifecycle = GameLifecycle.ENDED;
+        entry.lastActive = System.currentTimeMillis();
+        ArchivedGame result = ArchivedGame.of(entry.game.getGameCode(), entry.game.getQuestionBankVersion(),
+                finalBoard);
+        synchronized (archive) {
+            archive.addFirst(result);
+            while (archive.size() > archiveSize) {
+                archive.removeLast();
+            }
+        }
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        for (Entry entry : games.values()) {
+            switch (entry.lifecycle) {
+                case LOBBY:
+                    if (entry.game.isGameStarted()) {
+                        entry.lifecycle = GameLifecycle.RUNNING;
+                    } else if (!entry.game.getConnections().isEmpty()) {
+                        entry.lastActive = now;
+                    } else if (now - entry.lastActive > lobbyTtlMillis) {
+                        evict(entry, "abandoned lobby");
+                    }
+                    break;
+                case ENDED:
+                    if (now - entry.lastActive > endedTtlMillis) {
+                        evict(entry, "ended");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // The code is released only after the game is closed, so it never names two games.
+    private void evict(Entry entry, String reason) {
+        String code = entry.game.getGameCode();
+        if (!games.remove(code, entry))
+            return;
+        entry.game.close();
+        codes.release(Integer.parseInt(code));
+        System.out.println("Evicted game " + code + " (" + reason + ")");
+    }
+}
@@ -1,40 +1,109 @@
 package iskahoot.server;
 
 import iskahoot.model.Player;
+import iskahoot.model.PlayerSnapshot;
+import iskahoot.model.PlayerStanding;
 import iskahoot.model.Question;
 import iskahoot.model.ScoreBoard;
+import iskahoot.model.ScoreBoardDelta;
 import iskahoot.net.*;
+import iskahoot.util.QuestionBank;
 
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
-public class GameState implements Runnable {
+// The game is a state machine advanced by tasks on a shared scheduler; no thread is
+// held for the duration of a game. Phase transitions happen under the GameState lock.
+public class GameState {
     private final String gameCode;
     private final int numTeams;
     private final int playersPerTeam;
     private final int totalQuestions;
 
     // Clients and Players
-    private final Map<String, DealWithClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, ClientConnection> clients = new ConcurrentHashMap<>();
     private final Map<String, Player> players = new ConcurrentHashMap<>();
-    private final Map<String, String> playerTeams = new ConcurrentHashMap<>();
+    // Dense slot ids handed out at join time; round state is indexed by slot.
+    private final List<Player> playersBySlot = new ArrayList<>();
+    private final List<ClientConnection> connectionsBySlot = new ArrayList<>();
+    private Player[] slotPlayers = new Player[0];
+    private ClientConnection[] slotClients = new ClientConnection[0];
+    private final Map<String, Integer> slotsByName = new HashMap<>();
+    // Slots whose connection has gone away; guarded by the GameState lock.
+    private final BitSet disconnected = new BitSet();
+    private final Map<Integer, Long> disconnectedSince = new HashMap<>();
+    // A slot's resume token lets a player who lost their connection take the seat back.
+    // Seats are found by the token's hash, the only form journaled or checkpointed; the
+    // token itself is kept just long enough to hand it to the player, so a recovered
+    // game has none.
+    private final List<String> resumeTokens = new ArrayList<>();
+    private final List<String> tokenHashes = new ArrayList<>();
+    private final Map<String, Integer> slotsByToken = new HashMap<>();
+    private final TeamIndex teams = new TeamIndex();
+    private Leaderboard playerBoard = new Leaderboard(0);
+    private Leaderboard teamBoard = new Leaderboard(0);
 
     // Game State
     private final List<Question> questions = new ArrayList<>();
     private int currentQuestionIndex = 0;
+    private int questionBankVersion;
+    private String questionsFingerprint;
+    private int[] questionIds = new int[0];
     private final AtomicBoolean gameStarted = new AtomicBoolean(false);
-    private final AtomicBoolean gameEnded = new AtomicBoolean(false);
+    private volatile GamePhase phase = GamePhase.LOBBY;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> phaseTimer;
+    private RoundScorer scorer;
+    private volatile boolean closed = false;
+    private Consumer<ScoreBoard> endListener;
+    private volatile GameJournal journal;
+    // Slots that answered the question being replayed; recovery only.
+    private BitSet replayedAnswers;
 
     // Round State
-    private final Map<String, Integer> currentAnswers = new ConcurrentHashMap<>();
-    private final Map<String, Long> answerTimes = new ConcurrentHashMap<>();
-    private boolean isTeamQuestion = false;
+    private RoundAnswers answers = new RoundAnswers(0);
+    // Generation of the open round in the high 32 bits, its question number in the low 32,
+    // so the answer path reads both at once.
+    private volatile long openRound = 0;
+    private volatile int expectedAnswers;
+    private volatile boolean isTeamQuestion = false;
+    private volatile long questionDeadline;
 
     // Synchronization
-    private ModifiedCountdownLatch currentLatch;
-    private CustomBarrier currentBarrier;
+    private RoundCoordinator coordinator;
     private static final int QUESTION_TIME_LIMIT_SEC = 30;
+    // Reset for every individual round rather than allocated per question.
+    private final ModifiedCountdownLatch bonusLatch = new ModifiedCountdownLatch(2, 2, QUESTION_TIME_LIMIT_SEC, 0);
+    private static final long START_DELAY_MS = 2000;
+    private static final long SCOREBOARD_PAUSE_MS = 5000;
+    // How long a disconnected player may take to resume their seat.
+    private static final long RESUME_GRACE_MS = Long.getLong("iskahoot.resume.graceMs", 60000);
+    private static final SecureRandom TOKENS = new SecureRandom();
+    // A checkpoint is written every this many rounds; the journal covers the rounds between.
+    private static final int CHECKPOINT_ROUNDS = Math.max(1, Integer.getInteger("iskahoot.checkpoint.rounds", 1));
+    // Version 1 kept resume tokens in the clear instead of their hashes; versions before 3
+    // have no question fingerprint.
+    private static final int CHECKPOINT_VERSION = 3;
+    // After a restart, how long players get to reconnect before the next question opens.
+    private static final long RECOVERY_DELAY_MS = Long.getLong("iskahoot.recovery.delayMs", 10000);
+    // Round boards list only the top entries; each player also gets their own standing.
+    private static final int SCOREBOARD_TOP_K = Integer.getInteger("iskahoot.scoreboard.topK", 10);
+    // Between keyframes round boards go out as deltas against the previous version.
+    private static final int KEYFRAME_INTERVAL = Math.max(1, Integer.getInteger("iskahoot.scoreboard.keyframeInterval", 5));
+
+    // Last round board sent, which the next delta is computed against.
+    private ScoreBoard lastBoard;
+    private long boardVersion = 0;
+    private int boardsSinceKeyframe = 0;
 
     public GameState(String gameCode, int numTeams, int playersPerTeam, int totalQuestions) {
         this.gameCode = gameCode;
@@ -43,221 +112,710 @@ public class GameState implements Runnable {
         this.totalQuestions = totalQuestions;
     }
 
-    public boolean addPlayer(String username, DealWithClient client) {
-        int currentPlayers = clients.size();
+    // Seats are counted rather than connections, so a player who dropped out of the lobby
+    // still holds their place in the team.
+    public synchronized int addPlayer(String username, ClientConnection client) {
+        int currentPlayers = playersBySlot.size();
         String assignedTeam = "Team" + ((currentPlayers / playersPerTeam) + 1);
         return addPlayer(username, assignedTeam, client);
     }
 
-    public synchronized boolean addPlayer(String username, String teamName, DealWithClient client) {
-        if (gameStarted.get() || clients.containsKey(username)) {
-            return false;
+    // Returns the player's slot, or -1 if they could not join.
+    public synchronized int addPlayer(String username, String teamName, ClientConnection client) {
+        if (closed || gameStarted.get() || clients.containsKey(username)) {
+            return -1;
+        }
+        Integer seat = slotsByName.get(username);
+        if (seat != null) {
+            // Rejoining the lobby after a dropped connection keeps the original seat.
+            clients.put(username, client);
+            connectionsBySlot.set(seat, client);
+            disconnected.clear(seat);
+            disconnectedSince.remove(seat);
+            // Whoever held the seat before cannot resume it any more.
+            issueToken(seat);
+            record(JournalEvent.playerResumed(gameCode, seat, tokenHashes.get(seat)));
+            return seat;
         }
         clients.put(username, client);
+        int slot = addSeat(username, teamName, client, null);
+        record(JournalEvent.playerJoined(gameCode, slot, username, teamName, tokenHashes.get(slot)));
+        return slot;
+    }
+
+    private int addSeat(String username, String teamName, ClientConnection client, String tokenHash) {
         Player newPlayer = new Player(username);
         newPlayer.setTeamName(teamName);
         players.put(username, newPlayer);
-        playerTeams.put(username, teamName);
-        return true;
+        playersBySlot.add(newPlayer);
+        connectionsBySlot.add(client);
+        int slot = playersBySlot.size() - 1;
+        slotsByName.put(username, slot);
+        resumeTokens.add(null);
+        tokenHashes.add(null);
+        if (tokenHash == null) {
+            issueToken(slot);
+        } else {
+            setTokenHash(slot, tokenHash);
+        }
+        teams.add(slot, teamName);
+        return slot;
+    }
+
+    private void issueToken(int slot) {
+        byte[] bytes = new byte[16];
+        TOKENS.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        setTokenHash(slot, JournalEvent.hashToken(token));
+        resumeTokens.set(slot, token);
+    }
+
+    // Replaces the seat's token; the previous one stops working.
+    private void setTokenHash(int slot, String tokenHash) {
+        String previous = tokenHashes.set(slot, tokenHash);
+        if (previous != null) {
+            slotsByToken.remove(previous);
+        }
+        resumeTokens.set(slot, null);
+        slotsByToken.put(tokenHash, slot);
+    }
+
+    public synchronized String getResumeToken(int slot) {
+        return slot >= 0 && slot < resumeTokens.size() ? resumeTokens.get(slot) : null;
+    }
+
+    // Puts the connection back in the seat the token was issued for, sends `accepted` and
+    // then what the player missed. Returns the slot, or -1 if the token is unknown, the
+    // grace window has passed or the game is over. A connection the server still thinks
+    // is alive is replaced: the client knows better that it is gone.
+    public synchronized int resumePlayer(String token, ClientConnection client, JoinResponse accepted) {
+        String tokenHash = JournalEvent.hashToken(token);
+        Integer seat = slotsByToken.get(tokenHash);
+        if (seat == null || closed || phase == GamePhase.ENDED)
+            return -1;
+        int slot = seat;
+        Long since = disconnectedSince.get(slot);
+        if (since != null && System.currentTimeMillis() - since > RESUME_GRACE_MS) {
+            slotsByToken.remove(tokenHash);
+            return -1;
+        }
+
+        Player player = playersBySlot.get(slot);
+        ClientConnection previous = connectionsBySlot.get(slot);
+        connectionsBySlot.set(slot, client);
+        if (slot < slotClients.length) {
+            slotClients[slot] = client;
+        }
+        clients.put(player.getUsername(), client);
+        boolean wasConnected = !disconnected.get(slot);
+        disconnected.clear(slot);
+        disconnectedSince.remove(slot);
+        if (wasConnected && previous != client) {
+            previous.abort();
+        }
+
+        System.out.println("Player " + player.getUsername() + " resumed game " + gameCode);
+        record(JournalEvent.playerResumed(gameCode, slot, null));
+        client.send(accepted);
+        sendCatchUp(slot);
+        return slot;
+    }
+
+    // Latest board and standing first, then the open question so the client ends up
+    // showing it. A player back before the round closes gets their answer back.
+    private void sendCatchUp(int slot) {
+        if (phase == GamePhase.LOBBY)
+            return;
+        ClientConnection client = slotClients[slot];
+        if (lastBoard != null) {
+            if (client.getProtocolVersion() >= BinaryCodec.RANKED_BOARD_VERSION) {
+                client.send(new ScoreBoardMessage(lastBoard, false, boardVersion));
+                client.send(new StandingMessage(standing(slot)));
+            } else {
+                client.send(new ScoreBoardMessage(snapshot(lastBoard.getCurrentQuestion(), slotPlayers.length), false));
+            }
+        }
+        if (phase == GamePhase.QUESTION_OPEN) {
+            if (answers.answer(slot) == RoundAnswers.FORFEIT && coordinator.rejoin(round())) {
+                answers.release(slot, round());
+            }
+            long remaining = Math.max(1, (questionDeadline - System.nanoTime()) / 1_000_000);
+            client.send(new QuestionMessage(questions.get(currentQuestionIndex), currentQuestionIndex + 1,
+                    questions.size(), remaining));
+        }
     }
 
     public boolean isGameStarted() {
         return gameStarted.get();
     }
 
-    public void setQuestions(List<Question> availableQuestions) {
-        List<Question> shuffled = new ArrayList<>(availableQuestions);
-        Collections.shuffle(shuffled);
+    // Only the questions picked for this game are decoded from the bank. The game keeps
+    // these copies, so a later bank reload does not affect it.
+    public void setQuestions(QuestionBank bank, int[] ids) {
         this.questions.clear();
-        this.questions.addAll(shuffled.subList(0, Math.min(shuffled.size(), totalQuestions)));
+        this.questionIds = Arrays.copyOf(ids, Math.min(ids.length, totalQuestions));
+        for (int i = 0; i < questionIds.length; i++) {
+            Question q = bank.getStore().get(ids[i]);
+            q.setBankSource(bank.getVersion(), ids[i]);
+            this.questions.add(q);
+        }
+        this.questionBankVersion = bank.getVersion();
+        this.questionsFingerprint = fingerprint(questions);
     }
 
-    public Collection<Player> getPlayers() {
-        return players.values();
+    // Bank versions restart with every process, so a recovered game checks the content
+    // of its questions instead: a changed or reloaded file must not swap what it asks.
+    static String fingerprint(List<Question> questions) {
+        BinaryCodec.Writer w = new BinaryCodec.Writer(questions.size() * 128);
+        for (Question q : questions) {
+            w.writeString(q.getQuestion());
+            w.writeInt(q.getPoints());
+            w.writeInt(q.getCorrect());
+            String[] options = q.getOptions();
+            w.writeInt(options.length);
+            for (String option : options) {
+                w.writeString(option);
+            }
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(w.toByteArray());
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
-    public String getGameCode() {
-        return gameCode;
+    // Records this game's events from now on, starting with how it was set up.
+    public synchronized void setJournal(GameJournal journal) {
+        this.journal = journal;
+        record(JournalEvent.gameCreated(gameCode, numTeams, playersPerTeam, questionBankVersion, questionsFingerprint,
+                questionIds));
+        checkpoint();
     }
 
-    @Override
-    public void run() {
-        if (gameStarted.getAndSet(true))
-            return;
+    private void record(JournalEvent event) {
+        GameJournal j = journal;
+        if (j != null) {
+            j.append(event);
+        }
+    }
 
-        broadcast(new GameStartMessage(questions.size()));
+    // Called under the game lock, at round boundaries, so the snapshot is consistent.
+    private void checkpoint() {
+        GameJournal j = journal;
+        if (j != null) {
+            j.checkpoint(gameCode, encodeCheckpoint());
+        }
+    }
 
-        synchronized (this) {
-            try {
-                wait(2000);
-            } catch (InterruptedException e) {
+    private void dropCheckpoint() {
+        GameJournal j = journal;
+        if (j != null) {
+            j.checkpoint(gameCode, null);
+        }
+    }
+
+    // Seats, token hashes, scores and where the game is; the open round, if any, is not kept
+    // and is asked again after a recovery.
+    private byte[] encodeCheckpoint() {
+        BinaryCodec.Writer w = new BinaryCodec.Writer(64 + playersBySlot.size() * 48);
+        w.writeInt(CHECKPOINT_VERSION);
+        w.writeString(gameCode);
+        w.writeInt(numTeams);
+        w.writeInt(playersPerTeam);
+        w.writeInt(totalQuestions);
+        w.writeInt(questionIds.length);
+        for (int id : questionIds) {
+            w.writeInt(id);
+        }
+        w.writeString(questionsFingerprint);
+        w.writeBoolean(gameStarted.get());
+        w.writeInt(currentQuestionIndex);
+        w.writeLong(boardVersion);
+        w.writeInt(playersBySlot.size());
+        for (int slot = 0; slot < playersBySlot.size(); slot++) {
+            PlayerSnapshot p = playersBySlot.get(slot).snapshot();
+            w.writeString(p.getUsername());
+            w.writeString(p.getTeamName());
+            w.writeString(tokenHashes.get(slot));
+            w.writeInt(p.getScore());
+            w.writeInt(p.getQuestionsAnswered());
+            w.writeInt(p.getCorrectAnswers());
+        }
+        if (gameStarted.get()) {
+            w.writeInt(teams.count());
+            for (int team = 0; team < teams.count(); team++) {
+                w.writeInt(teams.score(team));
+                w.writeInt(teams.correctAnswers(team));
             }
         }
+        return w.toByteArray();
+    }
 
-        for (currentQuestionIndex = 0; currentQuestionIndex < questions.size(); currentQuestionIndex++) {
-            Question q = questions.get(currentQuestionIndex);
-            isTeamQuestion = (currentQuestionIndex % 2 != 0);
+    // Rebuilds a game from its checkpoint, with every player disconnected. The question
+    // ids are looked up in the bank loaded now and must still hold the same questions.
+    static GameState fromCheckpoint(byte[] data, QuestionBank bank) throws IOException {
+        BinaryCodec.Reader r = new BinaryCodec.Reader(data, 0, data.length);
+        int version = r.readInt();
+        if (version < 1 || version > CHECKPOINT_VERSION) {
+            throw new IOException("unsupported checkpoint version " + version);
+        }
+        String code = r.readString();
+        int numTeams = r.readInt();
+        int playersPerTeam = r.readInt();
+        int totalQuestions = r.readInt();
+        int[] ids = new int[r.readCount()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = r.readInt();
+        }
+        String fingerprint = version >= 3 ? r.readString() : null;
+        GameState game = new GameState(code, numTeams, playersPerTeam, totalQuestions);
+        game.setQuestions(bank, checkQuestions(bank, ids));
+        game.checkFingerprint(fingerprint);
+        boolean started = r.readBoolean();
+        game.currentQuestionIndex = r.readInt();
+        game.boardVersion = r.readLong();
+        int count = r.readCount();
+        for (int slot = 0; slot < count; slot++) {
+            String username = r.readString();
+            String teamName = r.readString();
+            String tokenHash = r.readString();
+            if (version == 1) {
+                tokenHash = JournalEvent.hashToken(tokenHash);
+            }
+            game.addSeat(username, teamName, null, tokenHash);
+            game.playersBySlot.get(slot).restore(r.readInt(), r.readInt(), r.readInt());
+        }
+        if (started) {
+            game.gameStarted.set(true);
+            game.teams.freeze();
+            int teamCount = r.readCount();
+            if (teamCount != game.teams.count()) {
+                throw new IOException("checkpoint has " + teamCount + " teams, players name " + game.teams.count());
+            }
+            for (int team = 0; team < teamCount; team++) {
+                game.teams.restoreTotals(team, r.readInt(), r.readInt());
+            }
+        }
+        return game;
+    }
 
-            currentAnswers.clear();
-            answerTimes.clear();
-            answerFactors.clear();
+    // A game whose creation was journaled but whose first checkpoint was not written.
+    static GameState fromCreated(JournalEvent created, QuestionBank bank) throws IOException {
+        int[] values = created.getValues();
+        int[] ids = Arrays.copyOfRange(values, 1, values.length);
+        GameState game = new GameState(created.getGameCode(), created.getSlot(), values[0], ids.length);
+        game.setQuestions(bank, checkQuestions(bank, ids));
+        game.checkFingerprint(created.getName());
+        return game;
+    }
 
-            int playerCount = clients.size();
+    // Journals and checkpoints from before fingerprints can only be range checked.
+    private void checkFingerprint(String expected) throws IOException {
+        if (expected == null) {
+            System.err.println("Game " + gameCode + " has no question fingerprint; questions not verified");
+        } else if (!expected.equals(questionsFingerprint)) {
+            throw new IOException("question bank changed since the game was created");
+        }
+    }
 
-            if (playerCount > 0) {
-                if (isTeamQuestion) {
-                    int parties = playerCount + 1;
-                    currentBarrier = new CustomBarrier(parties, this::processTeamAnswers);
-                    currentLatch = null;
-                } else {
-                    currentLatch = new ModifiedCountdownLatch(2, 2, QUESTION_TIME_LIMIT_SEC, playerCount);
-                    currentBarrier = null;
-                }
-            } else {
-                currentBarrier = null;
-                currentLatch = null;
+    private static int[] checkQuestions(QuestionBank bank, int[] ids) throws IOException {
+        for (int id : ids) {
+            if (id < 0 || id >= bank.size()) {
+                throw new IOException("question " + id + " is not in the bank");
             }
+        }
+        return ids;
+    }
 
-            QuestionMessage qMsg = new QuestionMessage(q, currentQuestionIndex + 1, questions.size());
-            broadcast(qMsg);
-
-            if (playerCount > 0) {
-                if (isTeamQuestion) {
-                    if (currentBarrier != null) {
-                        try {
-                            currentBarrier.await(QUESTION_TIME_LIMIT_SEC * 1000L);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                } else {
-                    if (currentLatch != null) {
-                        try {
-                            currentLatch.await();
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                        processIndividualAnswers();
-                    }
+    // Applies a journaled event that happened after the checkpoint the game was built
+    // from. Answers are only used to count who answered once their round was scored.
+    synchronized void replay(JournalEvent event) {
+        switch (event.getType()) {
+            case PLAYER_JOINED:
+                if (event.getSlot() == playersBySlot.size() && !gameStarted.get()
+                        && !slotsByName.containsKey(event.getName())) {
+                    addSeat(event.getName(), event.getTeam(), null, event.getTokenHash());
                 }
-            }
+                break;
+            case PLAYER_RESUMED:
+                if (event.getTokenHash() != null && event.getSlot() < playersBySlot.size()) {
+                    setTokenHash(event.getSlot(), event.getTokenHash());
+                }
+                break;
+            case GAME_STARTED:
+                if (!gameStarted.getAndSet(true)) {
+                    teams.freeze();
+                }
+                break;
+            case QUESTION_OPENED:
+                // A round nobody was left to answer closes without being scored.
+                currentQuestionIndex = Math.max(currentQuestionIndex, event.getValue() - 1);
+                replayedAnswers = new BitSet();
+                break;
+            case ANSWER:
+                if (replayedAnswers != null && event.getValues()[0] == currentQuestionIndex + 1) {
+                    replayedAnswers.set(event.getSlot());
+                }
+                break;
+            case ROUND_SCORED:
+                if (gameStarted.get() && event.getValue() == currentQuestionIndex + 1) {
+                    replayRound(event.getValues());
+                }
+                break;
+            default:
+                break;
+        }
+    }
 
-            ScoreBoard sb = new ScoreBoard(new ArrayList<>(players.values()), currentQuestionIndex + 1,
-                    questions.size());
-            broadcast(new ScoreBoardMessage(sb, false));
+    // Mirrors RoundScorer: everyone on a team round counts as having answered, and every
+    // slot awarded points counts as a correct answer for the player and their team.
+    private void replayRound(int[] awarded) {
+        boolean teamRound = currentQuestionIndex % 2 != 0;
+        for (int slot = 0; slot < playersBySlot.size(); slot++) {
+            Player player = playersBySlot.get(slot);
+            if (teamRound || (replayedAnswers != null && replayedAnswers.get(slot))) {
+                player.incrementQuestionsAnswered();
+            }
+            if (slot < awarded.length && awarded[slot] > 0) {
+                player.addScore(awarded[slot]);
+                int team = teams.teamOf(slot);
+                teams.addScore(team, awarded[slot]);
+                teams.addCorrect(team);
+            }
+        }
+        replayedAnswers = null;
+        boardVersion++;
+        currentQuestionIndex++;
+    }
 
-            synchronized (this) {
-                try {
-                    wait(5000);
-                } catch (InterruptedException e) {
-                }
+    // Puts a recovered game back in service. Every player starts out disconnected with
+    // a fresh grace window to resume; a running game waits RECOVERY_DELAY_MS and then
+    // carries on with the question that was open, or the next one.
+    synchronized void resumeAfterRecovery(ScheduledExecutorService scheduler, RoundScorer scorer,
+            GameJournal journal) {
+        long now = System.currentTimeMillis();
+        for (int slot = 0; slot < playersBySlot.size(); slot++) {
+            disconnected.set(slot);
+            disconnectedSince.put(slot, now);
+        }
+        replayedAnswers = null;
+        this.journal = journal;
+        if (gameStarted.get()) {
+            this.slotPlayers = playersBySlot.toArray(new Player[0]);
+            this.slotClients = connectionsBySlot.toArray(new ClientConnection[0]);
+            this.answers = new RoundAnswers(slotPlayers.length);
+            this.playerBoard = new Leaderboard(slotPlayers.length);
+            int[] scores = new int[slotPlayers.length];
+            for (int slot = 0; slot < scores.length; slot++) {
+                scores[slot] = slotPlayers[slot].getScore();
+            }
+            playerBoard.addScores(scores);
+            this.teamBoard = new Leaderboard(teams.count());
+            int[] teamScores = new int[teams.count()];
+            for (int team = 0; team < teamScores.length; team++) {
+                teamScores[team] = teams.score(team);
             }
+            teamBoard.addScores(teamScores);
+            this.scheduler = scheduler;
+            this.scorer = scorer;
+            this.coordinator = new RoundCoordinator(scheduler);
+            if (currentQuestionIndex > 0) {
+                lastBoard = snapshot(currentQuestionIndex, SCOREBOARD_TOP_K);
+            }
+            phase = GamePhase.SCOREBOARD_PAUSE;
+            phaseTimer = scheduler.schedule(this::openQuestion, RECOVERY_DELAY_MS, TimeUnit.MILLISECONDS);
         }
+        checkpoint();
+    }
 
-        gameEnded.set(true);
-        ScoreBoard finalSb = new ScoreBoard(new ArrayList<>(players.values()), questions.size(), questions.size());
-        broadcast(new ScoreBoardMessage(finalSb, true));
+    public int getQuestionBankVersion() {
+        return questionBankVersion;
     }
 
-    public void submitAnswer(String username, int answerIndex) {
-        if (currentAnswers.containsKey(username))
+    public Collection<Player> getPlayers() {
+        return players.values();
+    }
+
+    public Map<String, ClientConnection> getConnections() {
+        return Collections.unmodifiableMap(clients);
+    }
+
+    public String getGameCode() {
+        return gameCode;
+    }
+
+    public GamePhase getPhase() {
+        return phase;
+    }
+
+    public boolean start(ScheduledExecutorService scheduler, RoundScorer scorer) {
+        if (closed || gameStarted.getAndSet(true))
+            return false;
+
+        synchronized (this) {
+            this.slotPlayers = playersBySlot.toArray(new Player[0]);
+            this.slotClients = connectionsBySlot.toArray(new ClientConnection[0]);
+            this.answers = new RoundAnswers(slotPlayers.length);
+            this.teams.freeze();
+            this.playerBoard = new Leaderboard(slotPlayers.length);
+            this.teamBoard = new Leaderboard(teams.count());
+            this.scheduler = scheduler;
+            this.scorer = scorer;
+            this.coordinator = new RoundCoordinator(scheduler);
+            record(JournalEvent.gameStarted(gameCode, slotPlayers.length));
+            checkpoint();
+            broadcast(new GameStartMessage(questions.size()));
+            phaseTimer = scheduler.schedule(this::openQuestion, START_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    private synchronized void openQuestion() {
+        if (closed)
+            return;
+        if (currentQuestionIndex >= questions.size()) {
+            endGame();
             return;
-        if (gameEnded.get())
+        }
+
+        Question q = questions.get(currentQuestionIndex);
+        isTeamQuestion = (currentQuestionIndex % 2 != 0);
+
+        // Players who are gone are not waited for; the quorum only counts connected ones.
+        int playerCount = clients.size();
+        expectedAnswers = playerCount;
+
+        // The coordinator fires closeQuestion once, on the last answer or at the deadline,
+        // and never before this method returns since both run under the game lock.
+        questionDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(QUESTION_TIME_LIMIT_SEC);
+        int generation = coordinator.open(playerCount, QUESTION_TIME_LIMIT_SEC * 1000L, this::closeQuestion);
+        answers.open(generation);
+        teams.startRound();
+        for (int slot = disconnected.nextSetBit(0); slot >= 0; slot = disconnected.nextSetBit(slot + 1)) {
+            answers.claim(slot, generation, RoundAnswers.FORFEIT);
+        }
+        if (!isTeamQuestion) {
+            bonusLatch.reset(generation, playerCount);
+        }
+        openRound = ((long) generation << 32) | (currentQuestionIndex + 1);
+        phase = GamePhase.QUESTION_OPEN;
+        record(JournalEvent.questionOpened(gameCode, currentQuestionIndex + 1));
+        broadcast(new QuestionMessage(q, currentQuestionIndex + 1, questions.size(), QUESTION_TIME_LIMIT_SEC * 1000L));
+    }
+
+    private synchronized void closeQuestion(int expectedRound) {
+        if (phase != GamePhase.QUESTION_OPEN || round() != expectedRound)
             return;
 
-        currentAnswers.put(username, answerIndex);
-        answerTimes.put(username, System.currentTimeMillis());
+        phase = GamePhase.SCORING;
+        if (expectedAnswers > 0) {
+            scoreRound();
+        }
 
-        if (isTeamQuestion) {
-            if (currentBarrier != null) {
-                try {
-                    currentBarrier.await(QUESTION_TIME_LIMIT_SEC * 1000L);
-                } catch (InterruptedException e) {
-                }
-            }
-        } else {
-            if (currentLatch != null) {
-                int factor = currentLatch.countdown();
-                answerFactors.put(username, factor);
-            }
+        broadcastBoard(snapshot(currentQuestionIndex + 1, SCOREBOARD_TOP_K));
+        sendStandings();
+
+        phase = GamePhase.SCOREBOARD_PAUSE;
+        currentQuestionIndex++;
+        if (currentQuestionIndex % CHECKPOINT_ROUNDS == 0 && currentQuestionIndex < questions.size()) {
+            checkpoint();
+        }
+        phaseTimer = scheduler.schedule(this::openQuestion, SCOREBOARD_PAUSE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void endGame() {
+        phase = GamePhase.ENDED;
+        record(JournalEvent.gameEnded(gameCode));
+        dropCheckpoint();
+        sendStandings();
+        ScoreBoard finalBoard = snapshot(questions.size(), slotPlayers.length);
+        broadcast(new ScoreBoardMessage(finalBoard, true));
+        if (endListener != null) {
+            endListener.accept(finalBoard);
         }
     }
 
-    private final Map<String, Integer> answerFactors = new ConcurrentHashMap<>();
+    // Told the final board once the game ends, under the game lock.
+    public synchronized void setEndListener(Consumer<ScoreBoard> listener) {
+        this.endListener = listener;
+    }
 
-    private void processIndividualAnswers() {
-        Question q = questions.get(currentQuestionIndex);
-        int correct = q.getCorrect();
+    // Takes the game out of service: no more joins, resumes or rounds, and whoever is
+    // still connected is dropped.
+    public synchronized void close() {
+        if (!closed && phase != GamePhase.ENDED) {
+            dropCheckpoint();
+        }
+        closed = true;
+        if (phaseTimer != null) {
+            phaseTimer.cancel(false);
+        }
+        for (ClientConnection client : clients.values()) {
+            client.abort();
+        }
+        clients.clear();
+    }
 
-        for (Map.Entry<String, Integer> entry : currentAnswers.entrySet()) {
-            String user = entry.getKey();
-            int ans = entry.getValue();
+    // The round is read before anything else and every step is tied to it, so an answer
+    // held up until the next round has opened is turned away instead of counted there.
+    public void submitAnswer(int slot, int answerIndex) {
+        long open = openRound;
+        int thisRound = (int) (open >>> 32);
+        int question = (int) open;
+        if (phase != GamePhase.QUESTION_OPEN || !RoundAnswers.isValidAnswer(answerIndex))
+            return;
+        if (slot < 0 || slot >= answers.size() || !answers.claim(slot, thisRound, answerIndex))
+            return;
 
-            if (ans == correct) {
-                int factor = answerFactors.getOrDefault(user, 1);
-                Player p = players.get(user);
-                if (p != null)
-                    p.addScore(q.getPoints() * factor);
-            }
-            Player p = players.get(user);
-            if (p != null)
-                p.incrementQuestionsAnswered();
+        boolean teamRound = (question - 1) % 2 != 0;
+        // A round that has already moved on gives no bonus.
+        int factor = teamRound ? 1 : Math.max(1, bonusLatch.countdown(thisRound));
+        answers.record(slot, System.nanoTime(), factor);
+        if (teamRound) {
+            teams.recordAnswer(slot, answerIndex == questions.get(question - 1).getCorrect());
         }
+        coordinator.arrive(thisRound);
     }
 
-    private void processTeamAnswers() {
+    private int round() {
+        return (int) (openRound >>> 32);
+    }
+
+    // The scorer updates players and team totals, possibly in parallel; the boards are
+    // then brought in step from the per-slot points it returns.
+    private void scoreRound() {
         Question q = questions.get(currentQuestionIndex);
-        int correct = q.getCorrect();
-
-        Map<String, List<String>> teamMembersMap = new HashMap<>();
-        for (String user : players.keySet()) {
-            String team = playerTeams.get(user);
-            teamMembersMap.computeIfAbsent(team, k -> new ArrayList<>()).add(user);
-        }
-
-        for (String team : teamMembersMap.keySet()) {
-            List<String> members = teamMembersMap.get(team);
-            boolean allCorrect = true;
-            boolean anyCorrect = false;
-            boolean allAnswered = true;
-
-            for (String member : members) {
-                if (!currentAnswers.containsKey(member)) {
-                    allAnswered = false;
-                    allCorrect = false;
-                } else {
-                    int ans = currentAnswers.get(member);
-                    if (ans == correct) {
-                        anyCorrect = true;
-                    } else {
-                        allCorrect = false;
-                    }
-                }
-                Player p = players.get(member);
-                if (p != null)
-                    p.incrementQuestionsAnswered();
+        int[] awarded = isTeamQuestion
+                ? scorer.scoreTeams(slotPlayers, teams, q.getPoints())
+                : scorer.scoreIndividual(slotPlayers, answers, teams, q.getCorrect(), q.getPoints());
+        playerBoard.addScores(awarded);
+        // Answers are journaled here rather than as they arrive, so they are always ahead
+        // of the round's score and hold exactly what the scorer saw. An open round is asked
+        // again after a recovery, so nothing is lost by not logging them sooner.
+        for (int slot = 0; slot < answers.size(); slot++) {
+            int answer = answers.answer(slot);
+            if (answer >= 0) {
+                record(JournalEvent.answer(gameCode, slot, currentQuestionIndex + 1, answer, answers.factor(slot)));
             }
+        }
+        record(JournalEvent.roundScored(gameCode, currentQuestionIndex + 1, awarded));
 
-            int points = 0;
-            if (allCorrect && allAnswered) {
-                points = q.getPoints() * 2;
-            } else if (anyCorrect) {
-                points = q.getPoints();
-            }
+        int[] teamPoints = new int[teams.count()];
+        for (int team = 0; team < teamPoints.length; team++) {
+            teamPoints[team] = teams.score(team) - teamBoard.score(team);
+        }
+        teamBoard.addScores(teamPoints);
+    }
+
+    // Walks the leaderboards instead of sorting; players and teams come out in rank order.
+    private ScoreBoard snapshot(int currentQuestion, int limit) {
+        List<PlayerSnapshot> ranked = new ArrayList<>(Math.min(limit, slotPlayers.length));
+        for (int slot : playerBoard.top(limit)) {
+            ranked.add(slotPlayers[slot].snapshot());
+        }
+        Map<String, Integer> teamScores = new LinkedHashMap<>();
+        for (int team : teamBoard.top(limit)) {
+            teamScores.merge(ScoreBoard.displayTeamName(teams.name(team)), teams.score(team), Integer::sum);
+        }
+        return new ScoreBoard(ranked, teamScores, currentQuestion, questions.size(), System.currentTimeMillis(),
+                slotPlayers.length, teams.count());
+    }
 
-            if (points > 0) {
-                for (String member : members) {
-                    Player p = players.get(member);
-                    if (p != null)
-                        p.addScore(points);
+    // Deltas only go to clients at DELTA_VERSION; older ones get the whole board every
+    // round. Clients older than RANKED_BOARD_VERSION total the teams themselves, so they
+    // get every player rather than the top entries. Each form is built only if needed.
+    private void broadcastBoard(ScoreBoard board) {
+        long version = ++boardVersion;
+        boolean keyframe = lastBoard == null || ++boardsSinceKeyframe >= KEYFRAME_INTERVAL;
+        if (keyframe) {
+            boardsSinceKeyframe = 0;
+        }
+        EncodedMessage full = null;
+        EncodedMessage delta = null;
+        EncodedMessage plain = null;
+        for (ClientConnection client : clients.values()) {
+            int clientVersion = client.getProtocolVersion();
+            if (clientVersion >= BinaryCodec.DELTA_VERSION && !keyframe) {
+                if (delta == null) {
+                    delta = new EncodedMessage(
+                            new ScoreBoardDeltaMessage(version, version - 1, ScoreBoardDelta.between(lastBoard, board)));
+                }
+                client.send(delta);
+            } else if (clientVersion >= BinaryCodec.RANKED_BOARD_VERSION) {
+                if (full == null) {
+                    full = new EncodedMessage(new ScoreBoardMessage(board, false, version));
+                }
+                client.send(full);
+            } else {
+                if (plain == null) {
+                    plain = new EncodedMessage(new ScoreBoardMessage(
+                            snapshot(board.getCurrentQuestion(), slotPlayers.length), false));
                 }
+                client.send(plain);
             }
         }
+        lastBoard = board;
+    }
+
+    private PlayerStanding standing(int slot) {
+        int team = teams.teamOf(slot);
+        return new PlayerStanding(playerBoard.rankOf(slot), playerBoard.score(slot), slotPlayers.length,
+                ScoreBoard.displayTeamName(teams.name(team)), teamBoard.rankOf(team), teams.score(team),
+                teams.count());
+    }
+
+    private void sendStandings() {
+        for (int slot = 0; slot < slotClients.length; slot++) {
+            if (!disconnected.get(slot) && slotClients[slot].getProtocolVersion() >= BinaryCodec.RANKED_BOARD_VERSION) {
+                slotClients[slot].send(new StandingMessage(standing(slot)));
+            }
+        }
+    }
+
+    // Stops broadcasting to the player and, if a question is open and they have not
+    // answered, counts them as arrived so the round does not wait out the deadline.
+    public synchronized void playerDisconnected(int slot, ClientConnection connection) {
+        if (slot < 0 || slot >= connectionsBySlot.size() || connectionsBySlot.get(slot) != connection)
+            return;
+        Player player = playersBySlot.get(slot);
+        clients.remove(player.getUsername(), connection);
+        disconnected.set(slot);
+        disconnectedSince.put(slot, System.currentTimeMillis());
+        System.out.println("Player " + player.getUsername() + " left game " + gameCode);
+        record(JournalEvent.playerLeft(gameCode, slot));
+        if (phase == GamePhase.QUESTION_OPEN && answers.claim(slot, round(), RoundAnswers.FORFEIT)) {
+            coordinator.arrive(round());
+        }
+    }
+
+    public synchronized void sendFullScoreBoard(int slot) {
+        if (phase == GamePhase.LOBBY || slot < 0 || slot >= slotClients.length)
+            return;
+        slotClients[slot].send(new ScoreBoardMessage(snapshot(currentQuestionIndex, slotPlayers.length), false, 0,
+                true));
+    }
+
+    // Resends the last round board so a client that missed a delta can rebuild its replica.
+    public synchronized void sendKeyframe(int slot) {
+        if (lastBoard == null || slot < 0 || slot >= slotClients.length)
+            return;
+        slotClients[slot].send(new ScoreBoardMessage(lastBoard, false, boardVersion));
+    }
+
+    public synchronized int getRank(int slot) {
+        return playerBoard.rankOf(slot);
+    }
+
+    public synchronized int getTeamRank(int slot) {
+        return teamBoard.rankOf(teams.teamOf(slot));
     }
 
+    // Encodes once per wire format, whatever the number of players.
     private void broadcast(Message msg) {
-        for (DealWithClient client : clients.values()) {
-            client.send(msg);
+        EncodedMessage encoded = new EncodedMessage(msg);
+        for (ClientConnection client : clients.values()) {
+            client.send(encoded);
         }
     }
 }
@@ -0,0 +1,52 @@
+package iskahoot.server;
+
+import iskahoot.net.EncodedMessage;
+import iskahoot.net.HeartbeatMessage;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Sends a heartbeat to every session that negotiated them and drops sessions that have
+// read nothing for longer than the idle timeout. Sessions that have not joined yet are
+// timed out too; older clients that cannot answer heartbeats are left alone once joined.
+public class HeartbeatMonitor {
+    private final Set<ClientSession> sessions = ConcurrentHashMap.newKeySet();
+    private final long intervalMillis;
+    private final long timeoutMillis;
+
+    public HeartbeatMonitor(long intervalMillis, long timeoutMillis) {
+        this.intervalMillis = intervalMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public void start(ScheduledExecutorService scheduler) {
+        scheduler.scheduleAtFixedRate(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void register(ClientSession session) {
+        sessions.add(session);
+    }
+
+    void unregister(ClientSession session) {
+        sessions.remove(session);
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    private void tick() {
+        EncodedMessage heartbeat = new EncodedMessage(new HeartbeatMessage(System.currentTimeMillis()));
+        for (ClientSession session : sessions) {
+            if (session.isMonitored() && session.idleMillis() > timeoutMillis) {
+                System.out.println("Closing connection idle for " + session.idleMillis() + " ms");
+                unregister(session);
+                session.abort();
+            } else if (session.usesHeartbeats()) {
+                session.send(heartbeat);
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package iskahoot.server;
+
+// How hard the journal tries to get a batch onto the disk. Appending never waits for
+// any of these; they only change what survives a crash.
+public enum JournalDurability {
+    // Each batch is written to the file; the OS decides when it reaches the disk.
+    // Survives the server process dying, not the machine.
+    OS,
+    // As OS, plus a force at most once per force interval.
+    PERIODIC,
+    // Every batch is forced before the next one is written (group commit).
+    BATCH
+}
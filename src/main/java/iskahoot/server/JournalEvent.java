@@ -0,0 +1,281 @@
+package iskahoot.server;
+
+import iskahoot.net.BinaryCodec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+
+// One entry of the game journal. All event types share a flat layout so the journal
+// needs a single codec; the factory methods document what each field means per type.
+// The sequence number is assigned by the journal's writer, in file order. Resume tokens
+// are only ever journaled as their hash, which is also what seats are looked up by.
+public final class JournalEvent {
+    public enum Type {
+        GAME_CREATED,
+        PLAYER_JOINED,
+        GAME_STARTED,
+        QUESTION_OPENED,
+        ANSWER,
+        ROUND_SCORED,
+        PLAYER_LEFT,
+        PLAYER_RESUMED,
+        GAME_ENDED,
+        CHECKPOINT
+    }
+
+    private static final Type[] TYPES = Type.values();
+    private static final int[] NONE = new int[0];
+
+    private final Type type;
+    private final long time;
+    private final String gameCode;
+    private final int slot;
+    private final int value;
+    private final String name;
+    private final String team;
+    private final int[] values;
+    private final String tokenHash;
+    // Checkpoints only; written to its own file, not to the journal.
+    private final byte[] snapshot;
+    private long seq = -1;
+
+    private JournalEvent(Type type, long time, String gameCode, int slot, int value, String name, String team,
+            int[] values, String tokenHash, byte[] snapshot) {
+        this.type = type;
+        this.time = time;
+        this.gameCode = gameCode;
+        this.slot = slot;
+        this.value = value;
+        this.name = name;
+        this.team = team;
+        this.values = values;
+        this.tokenHash = tokenHash;
+        this.snapshot = snapshot;
+    }
+
+    private static JournalEvent of(Type type, String gameCode, int slot, int value, String name, String team,
+            int[] values) {
+        return of(type, gameCode, slot, value, name, team, values, null);
+    }
+
+    private static JournalEvent of(Type type, String gameCode, int slot, int value, String name, String team,
+            int[] values, String tokenHash) {
+        return new JournalEvent(type, System.currentTimeMillis(), gameCode, slot, value, name, team, values,
+                tokenHash, null);
+    }
+
+    static String hashToken(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // slot: number of teams; value: question bank version; name: fingerprint of the
+    // questions' content; values: players per team, then the question ids in the order
+    // they will be asked.
+    public static JournalEvent gameCreated(String gameCode, int numTeams, int playersPerTeam, int bankVersion,
+            String fingerprint, int[] questionIds) {
+        return of(Type.GAME_CREATED, gameCode, numTeams, bankVersion, fingerprint, null,
+                prepend(playersPerTeam, questionIds));
+    }
+
+    // tokenHash: hashToken() of the seat's resume token.
+    public static JournalEvent playerJoined(String gameCode, int slot, String username, String teamName,
+            String tokenHash) {
+        return of(Type.PLAYER_JOINED, gameCode, slot, 0, username, teamName, NONE, tokenHash);
+    }
+
+    public static JournalEvent gameStarted(String gameCode, int players) {
+        return of(Type.GAME_STARTED, gameCode, -1, players, null, null, NONE);
+    }
+
+    // value: 1-based question number.
+    public static JournalEvent questionOpened(String gameCode, int question) {
+        return of(Type.QUESTION_OPENED, gameCode, -1, question, null, null, NONE);
+    }
+
+    // value: the option chosen; values: {question number, speed bonus factor}.
+    public static JournalEvent answer(String gameCode, int slot, int question, int answerIndex, int factor) {
+        return of(Type.ANSWER, gameCode, slot, answerIndex, null, null, new int[] { question, factor });
+    }
+
+    // value: question number; values: points awarded to each slot in that round.
+    public static JournalEvent roundScored(String gameCode, int question, int[] awarded) {
+        return of(Type.ROUND_SCORED, gameCode, -1, question, null, null, awarded);
+    }
+
+    public static JournalEvent playerLeft(String gameCode, int slot) {
+        return of(Type.PLAYER_LEFT, gameCode, slot, 0, null, null, NONE);
+    }
+
+    // tokenHash: hash of the seat's new resume token, or null if it kept the old one.
+    public static JournalEvent playerResumed(String gameCode, int slot, String tokenHash) {
+        return of(Type.PLAYER_RESUMED, gameCode, slot, 0, null, null, NONE, tokenHash);
+    }
+
+    public static JournalEvent gameEnded(String gameCode) {
+        return of(Type.GAME_ENDED, gameCode, -1, 0, null, null, NONE);
+    }
+
+    // value: size of the snapshot, or -1 when the game's checkpoint is dropped.
+    public static JournalEvent checkpoint(String gameCode, byte[] snapshot) {
+        return new JournalEvent(Type.CHECKPOINT, System.currentTimeMillis(), gameCode, -1,
+                snapshot == null ? -1 : snapshot.length, null, null, NONE, null, snapshot);
+    }
+
+    static JournalEvent checkpoint(String gameCode, long seq, long time, byte[] snapshot) {
+        JournalEvent event = new JournalEvent(Type.CHECKPOINT, time, gameCode, -1, snapshot.length, null, null, NONE,
+                null, snapshot);
+        event.seq = seq;
+        return event;
+    }
+
+    private static int[] prepend(int first, int[] rest) {
+        int[] result = new int[rest.length + 1];
+        result[0] = first;
+        System.arraycopy(rest, 0, result, 1, rest.length);
+        return result;
+    }
+
+    void encode(BinaryCodec.Writer w) {
+        w.writeByte(type.ordinal());
+        w.writeLong(seq);
+        w.writeLong(time);
+        w.writeString(gameCode);
+        w.writeInt(slot);
+        w.writeInt(value);
+        w.writeString(name);
+        w.writeString(team);
+        w.writeInt(values.length);
+        for (int v : values) {
+            w.writeInt(v);
+        }
+        w.writeString(tokenHash);
+    }
+
+    // Version 1 segments predate resume tokens; version 2 ones hold them in the clear.
+    static JournalEvent decode(BinaryCodec.Reader r, int version) throws IOException {
+        int tag = r.readByte();
+        if (tag < 0 || tag >= TYPES.length) {
+            throw new IOException("Unknown journal event type: " + tag);
+        }
+        long seq = r.readLong();
+        long time = r.readLong();
+        String gameCode = r.readString();
+        int slot = r.readInt();
+        int value = r.readInt();
+        String name = r.readString();
+        String team = r.readString();
+        int[] values = new int[r.readCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = r.readInt();
+        }
+        String tokenHash = version >= 2 ? r.readString() : null;
+        if (version == 2 && tokenHash != null) {
+            tokenHash = hashToken(tokenHash);
+        }
+        JournalEvent event = new JournalEvent(TYPES[tag], time, gameCode, slot, value, name, team, values,
+                tokenHash, null);
+        event.seq = seq;
+        return event;
+    }
+
+    void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public String getGameCode() {
+        return gameCode;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTeam() {
+        return team;
+    }
+
+    public int[] getValues() {
+        return values;
+    }
+
+    public String getTokenHash() {
+        return tokenHash;
+    }
+
+    public byte[] getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(seq).append(' ')
+                .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(time))).append(' ')
+                .append(gameCode).append(' ').append(type);
+        switch (type) {
+            case GAME_CREATED:
+                sb.append(" teams=").append(slot).append(" perTeam=").append(values[0])
+                        .append(" bank=v").append(value)
+                        .append(" questions=").append(Arrays.toString(Arrays.copyOfRange(values, 1, values.length)))
+                        .append(" fingerprint=").append(name);
+                break;
+            case PLAYER_JOINED:
+                sb.append(" slot=").append(slot).append(' ').append(name).append(" [").append(team).append(']');
+                break;
+            case GAME_STARTED:
+                sb.append(" players=").append(value);
+                break;
+            case QUESTION_OPENED:
+                sb.append(" q").append(value);
+                break;
+            case ANSWER:
+                sb.append(" q").append(values[0]).append(" slot=").append(slot).append(" answer=").append(value)
+                        .append(" factor=").append(values[1]);
+                break;
+            case ROUND_SCORED:
+                sb.append(" q").append(value).append(" points=").append(Arrays.toString(values));
+                break;
+            case PLAYER_LEFT:
+            case PLAYER_RESUMED:
+                sb.append(" slot=").append(slot);
+                break;
+            case CHECKPOINT:
+                sb.append(value < 0 ? " dropped" : " bytes=" + value);
+                break;
+            default:
+                break;
+        }
+        return sb.toString();
+    }
+}
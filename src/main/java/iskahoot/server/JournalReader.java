@@ -0,0 +1,243 @@
+package iskahoot.server;
+
+import iskahoot.net.BinaryCodec;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Reads the journal back in sequence order, segment by segment. A record cut short or
+// failing its checksum can only be the tail of a segment the server was writing when it
+// died; the reader stops that segment there and moves on to the next one.
+public class JournalReader implements Closeable {
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+    private static final int MAX_RECORD = 64 * 1024 * 1024;
+
+    private final List<Path> segments;
+    private int nextSegment = 0;
+    private DataInputStream in;
+    private Path current;
+    private int version;
+    private int tornSegments = 0;
+    private final CRC32 crc = new CRC32();
+
+    public JournalReader(Path dir) throws IOException {
+        this(dir, 0);
+    }
+
+    // Skips the segments that only hold events before fromSeq; callers still see a few
+    // earlier events from the first segment read.
+    public JournalReader(Path dir, long fromSeq) throws IOException {
+        this.segments = segments(dir);
+        while (nextSegment + 1 < segments.size() && firstSeq(segments.get(nextSegment + 1)) <= fromSeq) {
+            nextSegment++;
+        }
+    }
+
+    static String segmentName(long firstSeq) {
+        return String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX);
+    }
+
+    static long firstSeq(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    public static List<Path> segments(Path dir) throws IOException {
+        List<Path> result = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return result;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().forEach(result::add);
+        }
+        return result;
+    }
+
+    // The sequence number the next event written to this directory should get. A
+    // checkpoint can outlive journal records that never reached the disk, so its
+    // number counts too.
+    static long nextSeq(Path dir) throws IOException {
+        long next = 0;
+        for (JournalEvent checkpoint : checkpoints(dir)) {
+            next = Math.max(next, checkpoint.getSeq() + 1);
+        }
+        List<Path> all = segments(dir);
+        if (all.isEmpty()) {
+            return next;
+        }
+        next = Math.max(next, firstSeq(all.get(all.size() - 1)));
+        try (JournalReader reader = new JournalReader(dir, Long.MAX_VALUE)) {
+            JournalEvent event;
+            while ((event = reader.next()) != null) {
+                next = Math.max(next, event.getSeq() + 1);
+            }
+        }
+        return next;
+    }
+
+    // The latest checkpoint of every game that had one, as CHECKPOINT events carrying
+    // the snapshot. Unreadable files are reported and skipped.
+    public static List<JournalEvent> checkpoints(Path dir) throws IOException {
+        List<JournalEvent> result = new ArrayList<>();
+        Path checkpointDir = dir.resolve(GameJournal.CHECKPOINT_DIR);
+        if (!Files.isDirectory(checkpointDir)) {
+            return result;
+        }
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(checkpointDir)) {
+            list.filter(p -> p.getFileName().toString().endsWith(GameJournal.CHECKPOINT_SUFFIX)).forEach(files::add);
+        }
+        CRC32 crc = new CRC32();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            String gameCode = name.substring(0, name.length() - GameJournal.CHECKPOINT_SUFFIX.length());
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buf.remaining() < GameJournal.CHECKPOINT_HEADER_SIZE || buf.getInt() != GameJournal.CHECKPOINT_MAGIC
+                    || buf.getInt() > GameJournal.VERSION) {
+                System.err.println("Skipping " + file + ": not a checkpoint");
+                continue;
+            }
+            long seq = buf.getLong();
+            long time = buf.getLong();
+            int length = buf.getInt();
+            int checksum = buf.getInt();
+            if (length != buf.remaining()) {
+                System.err.println("Skipping " + file + ": truncated");
+                continue;
+            }
+            byte[] snapshot = new byte[length];
+            buf.get(snapshot);
+            crc.reset();
+            crc.update(snapshot, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                System.err.println("Skipping " + file + ": checksum mismatch");
+                continue;
+            }
+            result.add(JournalEvent.checkpoint(gameCode, seq, time, snapshot));
+        }
+        return result;
+    }
+
+    // Returns the next event, or null once every segment has been read.
+    public JournalEvent next() throws IOException {
+        while (true) {
+            if (in == null) {
+                if (nextSegment >= segments.size()) {
+                    return null;
+                }
+                if (!openSegment(segments.get(nextSegment++))) {
+                    continue;
+                }
+            }
+            JournalEvent event = readRecord();
+            if (event != null) {
+                return event;
+            }
+            in.close();
+            in = null;
+        }
+    }
+
+    // Number of segments that ended in a partial or corrupt record.
+    public int getTornSegments() {
+        return tornSegments;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+    }
+
+    // False for a segment that was created but never written to.
+    private boolean openSegment(Path path) throws IOException {
+        current = path;
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+        try {
+            if (in.readInt() != GameJournal.MAGIC) {
+                throw new IOException(path + " is not a journal segment");
+            }
+            version = in.readInt();
+            if (version < 1 || version > GameJournal.VERSION) {
+                throw new IOException(path + " has unsupported journal version " + version);
+            }
+            return true;
+        } catch (EOFException e) {
+            in.close();
+            in = null;
+            return false;
+        }
+    }
+
+    // Null at the end of the segment, whether clean or torn.
+    private JournalEvent readRecord() throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        int checksum;
+        byte[] payload;
+        try {
+            checksum = in.readInt();
+            if (length <= 0 || length > MAX_RECORD) {
+                return torn("bad length " + length);
+            }
+            payload = new byte[length];
+            in.readFully(payload);
+        } catch (EOFException e) {
+            return torn("cut short");
+        }
+        crc.reset();
+        crc.update(payload, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            return torn("checksum mismatch");
+        }
+        return JournalEvent.decode(new BinaryCodec.Reader(payload, 0, length), version);
+    }
+
+    private JournalEvent torn(String reason) {
+        tornSegments++;
+        System.err.println("Journal segment " + current.getFileName() + " ends in a torn record (" + reason + ")");
+        return null;
+    }
+
+    // Prints the journal, optionally only the events of one game:
+    // java iskahoot.server.JournalReader <journalDir> [gameCode]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java iskahoot.server.JournalReader <journalDir> [gameCode]");
+            return;
+        }
+        String game = args.length > 1 ? args[1] : null;
+        long count = 0;
+        try (JournalReader reader = new JournalReader(Paths.get(args[0]))) {
+            JournalEvent event;
+            while ((event = reader.next()) != null) {
+                if (game == null || game.equals(event.getGameCode())) {
+                    System.out.println(event);
+                    count++;
+                }
+            }
+        }
+        System.out.println(count + " events");
+    }
+}
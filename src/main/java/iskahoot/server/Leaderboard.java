@@ -0,0 +1,209 @@
+package iskahoot.server;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Order-statistic treap over dense ids (player slots or team ids), ordered by score
+// descending and then by id. Nodes live in arrays indexed by id, so updates allocate
+// nothing. Score changes, rank queries and the first of a top-K walk are O(log n).
+// Not thread-safe: GameState only touches it while holding its own lock.
+public class Leaderboard {
+    private static final int NIL = -1;
+
+    private final long[] keys;
+    private final int[] scores;
+    private final int[] left;
+    private final int[] right;
+    private final int[] sizes;
+    private final int[] priorities;
+    private int root = NIL;
+    // Results of the last split, to keep updates allocation-free.
+    private int splitLeft;
+    private int splitRight;
+
+    public Leaderboard(int capacity) {
+        keys = new long[capacity];
+        scores = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        sizes = new int[capacity];
+        priorities = new int[capacity];
+        Random random = new Random();
+        for (int id = 0; id < capacity; id++) {
+            priorities[id] = random.nextInt();
+            insert(id, 0);
+        }
+    }
+
+    public int size() {
+        return root == NIL ? 0 : sizes[root];
+    }
+
+    public int score(int id) {
+        return scores[id];
+    }
+
+    public void addScore(int id, int points) {
+        if (points == 0)
+            return;
+        remove(id);
+        insert(id, scores[id] + points);
+    }
+
+    // Applies a whole round of changes, indexed by id. When most entries move, sorting
+    // the new keys and rebuilding in O(n) beats one O(log n) update per entry.
+    public void addScores(int[] points) {
+        int changed = 0;
+        for (int p : points) {
+            if (p != 0)
+                changed++;
+        }
+        if (changed < keys.length / 8) {
+            for (int id = 0; id < points.length; id++) {
+                addScore(id, points[id]);
+            }
+            return;
+        }
+        long[] sorted = new long[keys.length];
+        for (int id = 0; id < keys.length; id++) {
+            scores[id] += points[id];
+            keys[id] = key(scores[id], id);
+            sorted[id] = keys[id];
+        }
+        Arrays.parallelSort(sorted);
+        build(sorted);
+    }
+
+    // Competition ranking: 1 + the number of entries with a strictly higher score.
+    public int rankOf(int id) {
+        return countBefore(key(scores[id], 0)) + 1;
+    }
+
+    // 0-based position in the board, ties broken by id.
+    public int positionOf(int id) {
+        return countBefore(keys[id]);
+    }
+
+    // The first k ids in board order.
+    public int[] top(int k) {
+        int[] result = new int[Math.min(k, size())];
+        int[] stack = new int[64];
+        int depth = 0;
+        int node = root;
+        int n = 0;
+        while (n < result.length) {
+            while (node != NIL) {
+                if (depth == stack.length)
+                    stack = Arrays.copyOf(stack, depth * 2);
+                stack[depth++] = node;
+                node = left[node];
+            }
+            node = stack[--depth];
+            result[n++] = node;
+            node = right[node];
+        }
+        return result;
+    }
+
+    private static long key(int score, int id) {
+        return ((long) (Integer.MAX_VALUE - score) << 32) | id;
+    }
+
+    private int countBefore(long key) {
+        int count = 0;
+        int node = root;
+        while (node != NIL) {
+            if (keys[node] < key) {
+                count += size(left[node]) + 1;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return count;
+    }
+
+    private void insert(int id, int score) {
+        scores[id] = score;
+        keys[id] = key(score, id);
+        left[id] = NIL;
+        right[id] = NIL;
+        sizes[id] = 1;
+        split(root, keys[id]);
+        int before = splitLeft;
+        int after = splitRight;
+        root = merge(merge(before, id), after);
+    }
+
+    private void remove(int id) {
+        split(root, keys[id]);
+        int before = splitLeft;
+        split(splitRight, keys[id] + 1);
+        root = merge(before, splitRight);
+    }
+
+    // Builds the treap from keys in board order, keeping each id's priority. A node's
+    // subtree is final once it leaves the right spine, so sizes are set as it is popped.
+    private void build(long[] sorted) {
+        int[] spine = new int[sorted.length];
+        int depth = 0;
+        for (long k : sorted) {
+            int id = (int) k;
+            int last = NIL;
+            while (depth > 0 && priorities[spine[depth - 1]] < priorities[id]) {
+                last = spine[--depth];
+                update(last);
+            }
+            left[id] = last;
+            right[id] = NIL;
+            if (depth > 0)
+                right[spine[depth - 1]] = id;
+            spine[depth++] = id;
+        }
+        while (depth > 0) {
+            update(spine[--depth]);
+        }
+        root = sorted.length == 0 ? NIL : spine[0];
+    }
+
+    // Splits into (keys < key, keys >= key), left in splitLeft and splitRight.
+    private void split(int node, long key) {
+        if (node == NIL) {
+            splitLeft = NIL;
+            splitRight = NIL;
+        } else if (keys[node] < key) {
+            split(right[node], key);
+            right[node] = splitLeft;
+            update(node);
+            splitLeft = node;
+        } else {
+            split(left[node], key);
+            left[node] = splitRight;
+            update(node);
+            splitRight = node;
+        }
+    }
+
+    private int merge(int a, int b) {
+        if (a == NIL)
+            return b;
+        if (b == NIL)
+            return a;
+        if (priorities[a] > priorities[b]) {
+            right[a] = merge(right[a], b);
+            update(a);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        update(b);
+        return b;
+    }
+
+    private int size(int node) {
+        return node == NIL ? 0 : sizes[node];
+    }
+
+    private void update(int node) {
+        sizes[node] = size(left[node]) + size(right[node]) + 1;
+    }
+}
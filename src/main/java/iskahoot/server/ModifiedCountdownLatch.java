@@ -1,42 +1,103 @@
 package iskahoot.server;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lock-free: each countdown is a single CAS on a word holding the round's generation and
+// the arrivals so far, whose old value is the caller's arrival position. The first
+// bonusCount arrivals get the bonus factor and the arrival that brings the count to zero
+// completes the latch, each exactly once. One latch serves a whole game: reset() starts
+// the next round, and countdowns still carrying an earlier generation are turned away.
 public class ModifiedCountdownLatch {
     private final int bonusFactor;
     private final int bonusCount;
     private final long waitPeriodMillis;
-    private int count;
-    private int currentBonusCount;
+    // Generation in the high 32 bits, arrivals in the low 32.
+    private final AtomicLong state = new AtomicLong();
+    private volatile Round round;
+
+    private static final class Round {
+        final int generation;
+        final int count;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Round(int generation, int count) {
+            this.generation = generation;
+            this.count = count;
+            if (count <= 0) {
+                done.complete(null);
+            }
+        }
+    }
 
     public ModifiedCountdownLatch(int bonusFactor, int bonusCount, int waitPeriod, int count) {
         this.bonusFactor = bonusFactor;
         this.bonusCount = bonusCount;
         this.waitPeriodMillis = waitPeriod * 1000L;
-        this.count = count;
-        this.currentBonusCount = 0;
+        reset(0, count);
+    }
+
+    // Starts counting down from count under a new generation.
+    public synchronized void reset(int generation, int count) {
+        round = new Round(generation, count);
+        state.set((long) generation << 32);
     }
 
-    public synchronized int countdown() {
-        if (count > 0) {
-            count--;
-            if (count == 0) {
-                notifyAll();
+    public int countdown() {
+        return countdown(round.generation);
+    }
+
+    // Returns the caller's factor, or 0 if the latch has moved on from that generation.
+    public int countdown(int generation) {
+        while (true) {
+            Round r = round;
+            long current = state.get();
+            int currentGeneration = (int) (current >>> 32);
+            if (currentGeneration != r.generation) {
+                // reset() is between its two writes.
+                Thread.onSpinWait();
+                continue;
+            }
+            if (currentGeneration != generation) {
+                return 0;
+            }
+            int arrival = (int) current;
+            if (state.compareAndSet(current, current + 1)) {
+                if (arrival == r.count - 1) {
+                    r.done.complete(null);
+                }
+                return arrival < bonusCount ? bonusFactor : 1;
             }
         }
+    }
 
-        if (currentBonusCount < bonusCount) {
-            currentBonusCount++;
-            return bonusFactor;
-        }
-        return 1;
+    public int getCount() {
+        Round r = round;
+        return Math.max(0, r.count - (int) state.get());
     }
 
-    public synchronized void await() throws InterruptedException {
-        long start = System.currentTimeMillis();
-        long remaining = waitPeriodMillis;
+    // Waits for the count to reach zero or for the latch's wait period to elapse.
+    public void await() throws InterruptedException {
+        await(waitPeriodMillis, TimeUnit.MILLISECONDS);
+    }
 
-        while (count > 0 && remaining > 0) {
-            wait(remaining);
-            remaining = waitPeriodMillis - (System.currentTimeMillis() - start);
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            round.done.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
         }
     }
+
+    // Completes when the current round's count reaches zero; the returned future cannot
+    // complete the latch.
+    public CompletableFuture<Void> onCompletion() {
+        return round.done.copy();
+    }
 }
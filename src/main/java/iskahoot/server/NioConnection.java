@@ -0,0 +1,224 @@
+package iskahoot.server;
+
+import iskahoot.net.EncodedMessage;
+import iskahoot.net.Message;
+import iskahoot.net.MessageCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NioConnection implements ClientConnection {
+    private static final int INITIAL_READ_BUFFER = 512;
+    // A well-behaved client has an answer and a heartbeat or two in flight at most.
+    private static final int MAX_PENDING_MESSAGES = 64;
+
+    private final SocketChannel channel;
+    private final NioEventLoop loop;
+    private final ClientSession session;
+    private final OutboundQueue outbound;
+    private OutboundQueue.Entry current;
+    private ByteBuffer currentFrame;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile int version = 0;
+    private SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+    private volatile boolean closing = false;
+    private volatile boolean closed = false;
+    // Decoded messages are handed to the session on a worker, one at a time and in order,
+    // so game locks are never taken on the loop. disconnected() goes through the same path.
+    private final Executor workers;
+    private final Queue<Message> inbound = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean dispatching = new AtomicBoolean(false);
+    private boolean rejected;
+    private boolean disconnectHandled;
+
+    public NioConnection(SocketChannel channel, NioEventLoop loop, Server server, Executor workers) {
+        this.channel = channel;
+        this.loop = loop;
+        this.workers = workers;
+        this.session = new ClientSession(server, this);
+        this.outbound = server.newOutboundQueue();
+    }
+
+    void attach(SelectionKey key) {
+        this.key = key;
+        flush();
+    }
+
+    @Override
+    public void send(EncodedMessage msg) {
+        if (closing)
+            return;
+        if (!outbound.offer(msg)) {
+            System.out.println("Dropping client: outbound queue overflow (" + outbound.describe() + ")");
+            closing = true;
+            loop.execute(this::closeNow);
+            return;
+        }
+        scheduleFlush();
+    }
+
+    @Override
+    public OutboundQueue getOutboundQueue() {
+        return outbound;
+    }
+
+    @Override
+    public void setProtocolVersion(int version) {
+        this.version = version;
+    }
+
+    @Override
+    public int getProtocolVersion() {
+        return version;
+    }
+
+    // Closes once everything already queued has been written.
+    @Override
+    public void close() {
+        closing = true;
+        scheduleFlush();
+    }
+
+    @Override
+    public void abort() {
+        closing = true;
+        loop.execute(this::closeNow);
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flush);
+        }
+    }
+
+    void onReadable() {
+        try {
+            int n = channel.read(readBuffer);
+            if (n < 0) {
+                closeNow();
+                return;
+            }
+            readBuffer.flip();
+            while (readBuffer.remaining() >= MessageCodec.HEADER_SIZE) {
+                int length = readBuffer.getInt(readBuffer.position());
+                MessageCodec.checkLength(length);
+                if (readBuffer.remaining() < MessageCodec.HEADER_SIZE + length) {
+                    break;
+                }
+                int start = readBuffer.arrayOffset() + readBuffer.position() + MessageCodec.HEADER_SIZE;
+                Message msg = MessageCodec.decode(readBuffer.array(), start, length);
+                readBuffer.position(readBuffer.position() + MessageCodec.HEADER_SIZE + length);
+                if (pending.incrementAndGet() > MAX_PENDING_MESSAGES) {
+                    System.out.println("Dropping client: " + MAX_PENDING_MESSAGES + " messages waiting to be handled");
+                    closeNow();
+                    return;
+                }
+                inbound.add(msg);
+            }
+            compactReadBuffer();
+            scheduleDispatch();
+        } catch (IOException e) {
+            closeNow();
+        }
+    }
+
+    private void scheduleDispatch() {
+        if (!inbound.isEmpty() && dispatching.compareAndSet(false, true)) {
+            workers.execute(this::dispatch);
+        }
+    }
+
+    private void dispatch() {
+        do {
+            Message msg;
+            while ((msg = inbound.poll()) != null) {
+                pending.decrementAndGet();
+                if (!rejected && !session.handleMessage(msg)) {
+                    rejected = true;
+                    close();
+                }
+            }
+            if (closed && !disconnectHandled) {
+                disconnectHandled = true;
+                session.disconnected();
+            }
+            dispatching.set(false);
+        } while ((!inbound.isEmpty() || closed && !disconnectHandled) && dispatching.compareAndSet(false, true));
+    }
+
+    // Buffers stay small and only grow for a frame that does not fit.
+    private void compactReadBuffer() {
+        int needed = MessageCodec.HEADER_SIZE;
+        if (readBuffer.remaining() >= MessageCodec.HEADER_SIZE) {
+            needed += readBuffer.getInt(readBuffer.position());
+        }
+        if (needed > readBuffer.capacity()) {
+            ByteBuffer bigger = ByteBuffer.allocate(needed);
+            bigger.put(readBuffer);
+            readBuffer = bigger;
+        } else if (!readBuffer.hasRemaining() && readBuffer.capacity() > INITIAL_READ_BUFFER) {
+            readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+        } else {
+            readBuffer.compact();
+        }
+    }
+
+    void flush() {
+        flushScheduled.set(false);
+        if (key == null || closed)
+            return;
+        try {
+            while (true) {
+                if (current == null) {
+                    current = outbound.poll();
+                    if (current == null)
+                        break;
+                    currentFrame = current.getMessage().frame(version);
+                }
+                channel.write(currentFrame);
+                if (currentFrame.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                outbound.completed(current);
+                current = null;
+                currentFrame = null;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            if (closing) {
+                closeNow();
+            }
+        } catch (IOException e) {
+            closeNow();
+        }
+    }
+
+    void closeNow() {
+        if (closed)
+            return;
+        closed = true;
+        closing = true;
+        outbound.clear();
+        current = null;
+        currentFrame = null;
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+        }
+        if (dispatching.compareAndSet(false, true)) {
+            workers.execute(this::dispatch);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package iskahoot.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+
+// Non-blocking alternative to one DealWithClient thread per socket: a fixed set of
+// event loops does accept, read, decode and write for every connection. Decoded
+// messages are handled on the workers, never on a loop.
+public class NioTransport {
+    private final int port;
+    private final Server server;
+    private final NioEventLoop[] loops;
+    private final Executor workers;
+    private ServerSocketChannel serverChannel;
+    private int nextLoop = 0;
+
+    public NioTransport(int port, Server server, int threads, Executor workers) {
+        this.port = port;
+        this.server = server;
+        this.loops = new NioEventLoop[Math.max(1, threads)];
+        this.workers = workers;
+    }
+
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new NioEventLoop(this, "nio-loop-" + i);
+        }
+        loops[0].register(serverChannel, SelectionKey.OP_ACCEPT, null);
+        for (NioEventLoop loop : loops) {
+            loop.start();
+        }
+    }
+
+    public void stop() {
+        for (NioEventLoop loop : loops) {
+            if (loop != null)
+                loop.stop();
+        }
+        try {
+            if (serverChannel != null)
+                serverChannel.close();
+        } catch (IOException e) {
+        }
+    }
+
+    // Called on the accepting loop; connections are spread round-robin over all loops.
+    void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            NioEventLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            NioConnection connection = new NioConnection(channel, loop, server, workers);
+            loop.register(channel, SelectionKey.OP_READ, connection);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package iskahoot.server;
+
+import iskahoot.net.EncodedMessage;
+import iskahoot.net.Message;
+import iskahoot.net.ScoreBoardDeltaMessage;
+import iskahoot.net.ScoreBoardMessage;
+
+import java.util.ArrayDeque;
+import java.util.function.Predicate;
+
+// Bounded queue between the game and a connection's writer. Producers never block:
+// offer() either makes room according to the policy or reports that the client must go.
+public class OutboundQueue {
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+
+    private int maxDepth;
+    private long sent;
+    private long dropped;
+    private long totalWriteNanos;
+    private long maxWriteNanos;
+
+    public OutboundQueue(int capacity, OverflowPolicy policy) {
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+    }
+
+    // Returns false when the queue overflowed and the connection should be dropped.
+    public synchronized boolean offer(EncodedMessage msg) {
+        if (queue.size() >= capacity && !makeRoom(msg.getMessage())) {
+            return false;
+        }
+        queue.add(new Entry(msg, System.nanoTime()));
+        maxDepth = Math.max(maxDepth, queue.size());
+        return true;
+    }
+
+    private boolean makeRoom(Message incoming) {
+        if (policy == OverflowPolicy.DROP_STALE_SCOREBOARDS) {
+            // A dropped delta leaves a version gap; the client asks for a keyframe.
+            removeIf(m -> m instanceof ScoreBoardDeltaMessage
+                    || m instanceof ScoreBoardMessage && !((ScoreBoardMessage) m).isFinal());
+        } else if (policy == OverflowPolicy.COALESCE_LATEST) {
+            removeIf(m -> m.getClass() == incoming.getClass() && !isFinal(m));
+        }
+        return queue.size() < capacity;
+    }
+
+    private void removeIf(Predicate<Message> stale) {
+        int before = queue.size();
+        queue.removeIf(e -> stale.test(e.message.getMessage()));
+        dropped += before - queue.size();
+    }
+
+    private static boolean isFinal(Message m) {
+        return m instanceof ScoreBoardMessage && ((ScoreBoardMessage) m).isFinal();
+    }
+
+    public synchronized Entry poll() {
+        return queue.poll();
+    }
+
+    public synchronized boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public synchronized void clear() {
+        queue.clear();
+    }
+
+    // Called by the writer once an entry has been fully written to the socket.
+    public synchronized void completed(Entry entry) {
+        long latency = System.nanoTime() - entry.enqueuedAt;
+        sent++;
+        totalWriteNanos += latency;
+        maxWriteNanos = Math.max(maxWriteNanos, latency);
+    }
+
+    public synchronized int depth() {
+        return queue.size();
+    }
+
+    public synchronized String describe() {
+        double avgMillis = sent == 0 ? 0.0 : totalWriteNanos / (double) sent / 1_000_000.0;
+        return String.format("depth=%d maxDepth=%d sent=%d dropped=%d avgWrite=%.2fms maxWrite=%.2fms",
+                queue.size(), maxDepth, sent, dropped, avgMillis, maxWriteNanos / 1_000_000.0);
+    }
+
+    public static final class Entry {
+        private final EncodedMessage message;
+        private final long enqueuedAt;
+
+        private Entry(EncodedMessage message, long enqueuedAt) {
+            this.message = message;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        public EncodedMessage getMessage() {
+            return message;
+        }
+    }
+}
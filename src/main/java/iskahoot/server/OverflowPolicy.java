@@ -0,0 +1,10 @@
+package iskahoot.server;
+
+// What a full outbound queue does with a new message.
+public enum OverflowPolicy {
+    // Make room by dropping queued, non-final scoreboards; disconnect if that is not enough.
+    DROP_STALE_SCOREBOARDS,
+    // Make room by dropping queued messages of the same type as the new one.
+    COALESCE_LATEST,
+    DISCONNECT
+}
@@ -0,0 +1,114 @@
+package iskahoot.server;
+
+import iskahoot.util.QuestionBank;
+import iskahoot.util.QuestionLoader;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Holds the current question bank behind an atomic reference. Reloads parse on a
+// background thread and swap the reference only once the new bank is complete, so
+// game creation never waits on a parse. Games copy their questions out of the bank
+// when they are created and are unaffected by later swaps.
+public class QuestionBankManager {
+    // Editors often write a file in several steps; wait for them to settle.
+    private static final long WATCH_DELAY_MS = 500;
+
+    private final Path path;
+    private final AtomicReference<QuestionBank> current = new AtomicReference<>();
+    private final ScheduledExecutorService loader = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "question-bank-loader");
+        t.setDaemon(true);
+        return t;
+    });
+    private ScheduledFuture<?> pendingReload;
+    private int lastVersion = 0;
+
+    public QuestionBankManager(Path path) {
+        this.path = path;
+    }
+
+    // The first load runs on the caller; the server cannot start without a bank.
+    public QuestionBank load() throws IOException {
+        QuestionBank bank = new QuestionBank(nextVersion(), QuestionLoader.openBank(path));
+        current.set(bank);
+        loader.execute(bank.getCatalog()::buildIndexes);
+        return bank;
+    }
+
+    public QuestionBank current() {
+        return current.get();
+    }
+
+    public void reload() {
+        scheduleReload(0);
+    }
+
+    private synchronized void scheduleReload(long delayMs) {
+        if (pendingReload != null && !pendingReload.isDone()) {
+            pendingReload.cancel(false);
+        }
+        pendingReload = loader.schedule(this::reloadNow, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs on the loader thread only. A bank that fails to load leaves the current one in place.
+    private void reloadNow() {
+        try {
+            QuestionBank bank = new QuestionBank(nextVersion(), QuestionLoader.openBank(path));
+            bank.getCatalog().buildIndexes();
+            current.set(bank);
+            System.out.println("Loaded question bank v" + bank.getVersion() + ": " + bank.size() + " questions.");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Question bank reload failed, keeping v" + current.get().getVersion() + ": "
+                    + e.getMessage());
+        }
+    }
+
+    private synchronized int nextVersion() {
+        return ++lastVersion;
+    }
+
+    // Reloads whenever the bank file is created or modified.
+    public void watch() {
+        Path dir = path.toAbsolutePath().getParent();
+        Path name = path.getFileName();
+        WatchService watcher;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            System.err.println("Could not watch " + path + ": " + e.getMessage());
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (name.equals(event.context())) {
+                            scheduleReload(WATCH_DELAY_MS);
+                        }
+                    }
+                    if (!key.reset()) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // Server is shutting down
+            }
+        }, "question-bank-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
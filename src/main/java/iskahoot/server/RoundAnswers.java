@@ -0,0 +1,80 @@
+package iskahoot.server;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+// Per-round answer state indexed by player slot. Arrays are sized once per game and
+// cleared between rounds, so recording an answer allocates nothing. The first answer
+// for a slot is claimed with a CAS; time and bonus factor are published afterwards.
+// Each answer cell also holds the generation of the round it belongs to, so a claim
+// made for a round that has since been replaced fails instead of landing in the new one.
+public class RoundAnswers {
+    public static final int NO_ANSWER = -1;
+    // Claimed for a player who is not connected, so the round does not wait for them.
+    public static final int FORFEIT = -2;
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // Generation in the high 24 bits, the answer byte in the low 8.
+    private final int[] answers;
+    private final long[] times;
+    private final byte[] factors;
+
+    public RoundAnswers(int slots) {
+        this.answers = new int[slots];
+        this.times = new long[slots];
+        this.factors = new byte[slots];
+        Arrays.fill(answers, cell(0, NO_ANSWER));
+    }
+
+    private static int cell(int generation, int answer) {
+        return (generation << 8) | (answer & 0xFF);
+    }
+
+    public int size() {
+        return answers.length;
+    }
+
+    // Clears the answers and starts accepting claims for the given round only. Called
+    // between rounds, while no answers are accepted.
+    public void open(int generation) {
+        Arrays.fill(times, 0L);
+        Arrays.fill(factors, (byte) 0);
+        Arrays.fill(answers, cell(generation, NO_ANSWER));
+        VarHandle.releaseFence();
+    }
+
+    public static boolean isValidAnswer(int answerIndex) {
+        return answerIndex >= 0 && answerIndex <= Byte.MAX_VALUE;
+    }
+
+    public boolean claim(int slot, int generation, int answerIndex) {
+        return INTS.compareAndSet(answers, slot, cell(generation, NO_ANSWER), cell(generation, answerIndex));
+    }
+
+    // Gives a forfeited slot back to a player who returned while the round is open.
+    public boolean release(int slot, int generation) {
+        return INTS.compareAndSet(answers, slot, cell(generation, FORFEIT), cell(generation, NO_ANSWER));
+    }
+
+    public void record(int slot, long nanoTime, int factor) {
+        LONGS.setRelease(times, slot, nanoTime);
+        BYTES.setRelease(factors, slot, (byte) factor);
+    }
+
+    public int answer(int slot) {
+        return (byte) (int) INTS.getAcquire(answers, slot);
+    }
+
+    public long time(int slot) {
+        return (long) LONGS.getAcquire(times, slot);
+    }
+
+    // An answer still being recorded when the round closes counts without bonus.
+    public int factor(int slot) {
+        int factor = (byte) BYTES.getAcquire(factors, slot);
+        return factor == 0 ? 1 : factor;
+    }
+}
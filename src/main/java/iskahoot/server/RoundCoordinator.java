@@ -0,0 +1,91 @@
+package iskahoot.server;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+// Tracks one open round at a time and is reused for every round of a game. Arrivals
+// never block; the round action fires exactly once, on the scheduler, when the last
+// party arrives or the deadline passes. The generation and the number of missing
+// parties share one atomic word so a late arrival can never count against a newer round.
+public class RoundCoordinator {
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong state = new AtomicLong();
+    private final AtomicInteger firedGeneration = new AtomicInteger();
+    private volatile IntConsumer action;
+    private volatile ScheduledFuture<?> deadline;
+
+    public RoundCoordinator(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    // Opens the next round and returns its generation, which is passed to the action.
+    public synchronized int open(int parties, long timeoutMillis, IntConsumer action) {
+        int generation = generation(state.get()) + 1;
+        this.action = action;
+        state.set(((long) generation << 32) | Math.max(0, parties));
+        if (parties <= 0) {
+            fire(generation);
+        } else {
+            deadline = scheduler.schedule(() -> fire(generation), timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return generation;
+    }
+
+    public void arrive(int generation) {
+        while (true) {
+            long current = state.get();
+            int remaining = (int) current;
+            if (generation(current) != generation || remaining == 0) {
+                return;
+            }
+            if (state.compareAndSet(current, current - 1)) {
+                if (remaining == 1) {
+                    fire(generation);
+                }
+                return;
+            }
+        }
+    }
+
+    // Adds a party back to a round that is still waiting, e.g. a player who reconnected.
+    // Fails once the round has had all its arrivals, since its action may already be firing.
+    public boolean rejoin(int generation) {
+        while (true) {
+            long current = state.get();
+            if (generation(current) != generation || (int) current == 0) {
+                return false;
+            }
+            if (state.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public int currentGeneration() {
+        return generation(state.get());
+    }
+
+    private void fire(int generation) {
+        if (generation(state.get()) != generation) {
+            return;
+        }
+        int fired = firedGeneration.get();
+        if (fired >= generation || !firedGeneration.compareAndSet(fired, generation)) {
+            return;
+        }
+        ScheduledFuture<?> timer = deadline;
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        IntConsumer roundAction = action;
+        scheduler.execute(() -> roundAction.accept(generation));
+    }
+
+    private static int generation(long state) {
+        return (int) (state >>> 32);
+    }
+}
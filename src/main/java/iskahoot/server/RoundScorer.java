@@ -0,0 +1,108 @@
+package iskahoot.server;
+
+import iskahoot.model.Player;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Scores a closed round into per-slot points. Individual rounds are split by slot
+// ranges and team rounds by team ranges; every slot is written by exactly one task
+// and team totals are atomic, so the ranges run concurrently. Small games stay on
+// the calling thread.
+public class RoundScorer {
+    private static final int LEAF_SIZE = 2048;
+
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+
+    public RoundScorer(ForkJoinPool pool, int parallelThreshold) {
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public int[] scoreIndividual(Player[] players, RoundAnswers answers, TeamIndex teams, int correct, int points) {
+        int[] awarded = new int[players.length];
+        run(players.length, players.length, (from, to) -> {
+            for (int slot = from; slot < to; slot++) {
+                int ans = answers.answer(slot);
+                if (!RoundAnswers.isValidAnswer(ans))
+                    continue;
+
+                if (ans == correct) {
+                    award(players, teams, awarded, slot, points * answers.factor(slot));
+                }
+                players[slot].incrementQuestionsAnswered();
+            }
+        });
+        return awarded;
+    }
+
+    // Team outcomes come from the round counters kept by TeamIndex; only the point
+    // awards still touch each member.
+    public int[] scoreTeams(Player[] players, TeamIndex teams, int points) {
+        int[] awarded = new int[players.length];
+        run(teams.count(), players.length, (from, to) -> {
+            for (int team = from; team < to; team++) {
+                int teamPoints = 0;
+                if (teams.allCorrect(team)) {
+                    teamPoints = points * 2;
+                } else if (teams.anyCorrect(team)) {
+                    teamPoints = points;
+                }
+
+                for (int member : teams.members(team)) {
+                    players[member].incrementQuestionsAnswered();
+                    if (teamPoints > 0) {
+                        award(players, teams, awarded, member, teamPoints);
+                    }
+                }
+            }
+        });
+        return awarded;
+    }
+
+    private static void award(Player[] players, TeamIndex teams, int[] awarded, int slot, int points) {
+        players[slot].addScore(points);
+        int team = teams.teamOf(slot);
+        teams.addScore(team, points);
+        teams.addCorrect(team);
+        awarded[slot] = points;
+    }
+
+    private void run(int count, int playerCount, RangeAction action) {
+        if (playerCount < parallelThreshold || count <= 1) {
+            action.run(0, count);
+        } else {
+            int leaf = Math.max(1, (int) ((long) LEAF_SIZE * count / playerCount));
+            pool.invoke(new RangeTask(0, count, leaf, action));
+        }
+    }
+
+    private interface RangeAction {
+        void run(int from, int to);
+    }
+
+    private static class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int leaf;
+        private final RangeAction action;
+
+        RangeTask(int from, int to, int leaf, RangeAction action) {
+            this.from = from;
+            this.to = to;
+            this.leaf = leaf;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leaf) {
+                action.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, leaf, action), new RangeTask(mid, to, leaf, action));
+        }
+    }
+}
@@ -1,25 +1,60 @@
 package iskahoot.server;
 
-import iskahoot.util.QuestionLoader;
-import iskahoot.model.Question;
+import iskahoot.net.QuestionBodyCache;
+import iskahoot.util.QuestionBank;
+import iskahoot.util.QuestionFilter;
+import iskahoot.util.QuestionSampler;
 
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class Server {
     private static final int PORT = 12345;
-    private final Map<String, GameState> activeGames = new ConcurrentHashMap<>();
+    private static final String TRANSPORT = System.getProperty("iskahoot.transport", "blocking");
+    private static final int NIO_THREADS = Integer.getInteger("iskahoot.nio.threads",
+            Runtime.getRuntime().availableProcessors());
+    private static final int OUTBOUND_CAPACITY = Integer.getInteger("iskahoot.outbound.capacity", 64);
+    private static final OverflowPolicy OVERFLOW_POLICY = OverflowPolicy.valueOf(
+            System.getProperty("iskahoot.outbound.policy", "DROP_STALE_SCOREBOARDS").toUpperCase());
+    // Empty lobbies and ended games are evicted after these; their codes are then reused.
+    private static final long LOBBY_TTL_MS = Long.getLong("iskahoot.registry.lobbyTtlMs", 30 * 60 * 1000L);
+    private static final long ENDED_TTL_MS = Long.getLong("iskahoot.registry.endedTtlMs", 5 * 60 * 1000L);
+    private static final int ARCHIVE_SIZE = Integer.getInteger("iskahoot.registry.archiveSize", 1000);
+    private final GameRegistry games = new GameRegistry(LOBBY_TTL_MS, ENDED_TTL_MS, ARCHIVE_SIZE);
     private final ExecutorService clientExecutor = Executors.newCachedThreadPool();
     private volatile boolean running = true;
-    private List<Question> availableQuestions;
-    private final ExecutorService gameExecutor = Executors.newFixedThreadPool(5);
+    // A JSON bank or a pack compiled from one with iskahoot.util.QuestionPack.
+    private static final String QUESTIONS_PATH = System.getProperty("iskahoot.questions", "resources/questions.json");
+    private static final boolean WATCH_QUESTIONS = Boolean.parseBoolean(
+            System.getProperty("iskahoot.questions.watch", "true"));
+    private final QuestionBankManager questionBanks = new QuestionBankManager(Paths.get(QUESTIONS_PATH));
+    private static final int GAME_THREADS = Integer.getInteger("iskahoot.game.threads", 2);
+    private final ScheduledExecutorService gameScheduler = Executors.newScheduledThreadPool(GAME_THREADS);
+    // Rounds with at least this many players are scored across the fork-join pool.
+    private static final int SCORING_THRESHOLD = Integer.getInteger("iskahoot.scoring.parallelThreshold", 10000);
+    private static final int SCORING_THREADS = Integer.getInteger("iskahoot.scoring.threads",
+            Runtime.getRuntime().availableProcessors());
+    private static final long HEARTBEAT_INTERVAL_MS = Long.getLong("iskahoot.heartbeat.intervalMs", 5000);
+    private static final long IDLE_TIMEOUT_MS = Long.getLong("iskahoot.heartbeat.timeoutMs", 15000);
+    private final HeartbeatMonitor heartbeatMonitor = new HeartbeatMonitor(HEARTBEAT_INTERVAL_MS, IDLE_TIMEOUT_MS);
+    // Every join, answer and round result is appended here; an empty directory disables it.
+    private static final String JOURNAL_DIR = System.getProperty("iskahoot.journal.dir", "journal");
+    private static final JournalDurability JOURNAL_DURABILITY = JournalDurability.valueOf(
+            System.getProperty("iskahoot.journal.durability", "BATCH").toUpperCase());
+    private static final long JOURNAL_SEGMENT_BYTES = Long.getLong("iskahoot.journal.segmentBytes", 64L << 20);
+    private static final long JOURNAL_FORCE_INTERVAL_MS = Long.getLong("iskahoot.journal.forceIntervalMs", 100);
+    private static final int JOURNAL_CAPACITY = Integer.getInteger("iskahoot.journal.capacity", 65536);
+    private GameJournal journal;
+    private final RoundScorer roundScorer = new RoundScorer(new ForkJoinPool(SCORING_THREADS), SCORING_THRESHOLD);
 
     public static void main(String[] args) {
         new Server().start();
@@ -27,18 +62,48 @@ public class Server {
 
     public void start() {
         try {
-            availableQuestions = QuestionLoader.loadQuestionsFromFile("resources/questions.json");
-            System.out.println("Loaded " + availableQuestions.size() + " questions.");
+            QuestionBank bank = questionBanks.load();
+            System.out.println("Loaded " + bank.size() + " questions.");
         } catch (IOException e) {
             System.err.println("Error loading questions: " + e.getMessage());
             return;
         }
+        if (!JOURNAL_DIR.isEmpty()) {
+            GameRecovery recovery = new GameRecovery(Paths.get(JOURNAL_DIR), questionBanks.current());
+            List<GameState> recovered;
+            long recoveryStart = System.nanoTime();
+            try {
+                recovered = recovery.recover();
+                journal = GameJournal.open(Paths.get(JOURNAL_DIR), JOURNAL_DURABILITY, JOURNAL_SEGMENT_BYTES,
+                        JOURNAL_FORCE_INTERVAL_MS, JOURNAL_CAPACITY);
+            } catch (IOException e) {
+                System.err.println("Error opening journal: " + e.getMessage());
+                return;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close));
+            restoreGames(recovery, recovered, recoveryStart);
+        }
+        if (WATCH_QUESTIONS) {
+            questionBanks.watch();
+        }
+        heartbeatMonitor.start(gameScheduler);
+        games.start(gameScheduler);
 
-        new Thread(this::listenForConnections).start();
-        System.out.println("Server started on port " + PORT);
+        if ("nio".equalsIgnoreCase(TRANSPORT)) {
+            try {
+                new NioTransport(PORT, this, NIO_THREADS, clientExecutor).start();
+            } catch (IOException e) {
+                System.err.println("Error starting NIO transport: " + e.getMessage());
+                return;
+            }
+            System.out.println("Server started on port " + PORT + " (nio, " + NIO_THREADS + " event loops)");
+        } else {
+            new Thread(this::listenForConnections).start();
+            System.out.println("Server started on port " + PORT);
+        }
 
         Scanner scanner = new Scanner(System.in);
-        System.out.println("Commands: new <playersPerTeam> <numQuestions>, start <gameCode>, games, exit");
+        System.out.println("Commands: new <numTeams> <playersPerTeam> <numQuestions> [options], start <gameCode>, games, results [gameCode], stats <gameCode>, cache, journal, reload, exit");
 
         while (running) {
             System.out.print("> ");
@@ -49,6 +114,31 @@ public class Server {
         }
     }
 
+    // Puts recovered games back under their codes; players resume them with their tokens.
+    private void restoreGames(GameRecovery recovery, List<GameState> recovered, long recoveryStart) {
+        for (String code : recovery.getStaleCheckpoints()) {
+            journal.checkpoint(code, null);
+        }
+        int restored = 0;
+        int running = 0;
+        for (GameState game : recovered) {
+            if (!games.restore(game)) {
+                System.err.println("Cannot recover game " + game.getGameCode() + ": code unavailable");
+                journal.checkpoint(game.getGameCode(), null);
+                continue;
+            }
+            game.resumeAfterRecovery(gameScheduler, roundScorer, journal);
+            restored++;
+            if (game.isGameStarted()) {
+                running++;
+            }
+        }
+        if (restored > 0 || !recovery.getStaleCheckpoints().isEmpty()) {
+            System.out.printf("Recovered %d games (%d running) in %d ms: %s\n", restored, running,
+                    (System.nanoTime() - recoveryStart) / 1_000_000, recovery.describe());
+        }
+    }
+
     private void processCommand(String line) {
         String[] parts = line.trim().split("\\s+");
         if (parts.length == 0)
@@ -56,14 +146,25 @@ public class Server {
 
         switch (parts[0].toLowerCase()) {
             case "new":
-                if (parts.length != 4) {
-                    System.out.println("Usage: new <numTeams> <playersPerTeam> <numQuestions>");
+                if (parts.length < 4) {
+                    System.out.println("Usage: new <numTeams> <playersPerTeam> <numQuestions>"
+                            + " [tag=<tag>] [points>=<n>] [points<=<n>] [points=<n>] [options=<n>] [seed=<n>]");
                 } else {
                     try {
                         int numTeams = Integer.parseInt(parts[1]);
                         int playersPerTeam = Integer.parseInt(parts[2]);
                         int numQuestions = Integer.parseInt(parts[3]);
-                        createNewGame(numTeams, playersPerTeam, numQuestions);
+                        QuestionFilter filter = new QuestionFilter();
+                        Long seed = null;
+                        for (int i = 4; i < parts.length; i++) {
+                            if (parts[i].startsWith("seed=")) {
+                                seed = Long.parseLong(parts[i].substring(5));
+                            } else if (!parseFilterOption(parts[i], filter)) {
+                                System.out.println("Unknown option: " + parts[i]);
+                                return;
+                            }
+                        }
+                        createNewGame(numTeams, playersPerTeam, numQuestions, filter, seed);
                     } catch (NumberFormatException e) {
                         System.out.println("Invalid numbers.");
                     }
@@ -79,6 +180,27 @@ public class Server {
             case "games":
                 listGames();
                 break;
+            case "results":
+                printResults(parts.length > 1 ? parts[1] : null);
+                break;
+            case "stats":
+                if (parts.length != 2) {
+                    System.out.println("Usage: stats <gameCode>");
+                } else {
+                    printConnectionStats(parts[1]);
+                }
+                break;
+            case "cache":
+                System.out.println(QuestionBodyCache.shared().describe());
+                break;
+            case "journal":
+                System.out.println(journal == null ? "Journal disabled." : journal.describe());
+                break;
+            case "reload":
+                System.out.println("Reloading questions from " + QUESTIONS_PATH + " (now v"
+                        + questionBanks.current().getVersion() + ").");
+                questionBanks.reload();
+                break;
             case "exit":
                 running = false;
                 System.exit(0);
@@ -89,7 +211,7 @@ public class Server {
     }
 
     private void startGame(String gameCode) {
-        GameState game = activeGames.get(gameCode);
+        GameState game = games.get(gameCode);
         if (game == null) {
             System.out.println("Game not found.");
             return;
@@ -98,41 +220,108 @@ public class Server {
             System.out.println("Game already started.");
             return;
         }
-        gameExecutor.submit(game);
-        System.out.println("Game " + gameCode + " queued/started.");
+        if (game.start(gameScheduler, roundScorer)) {
+            games.started(game);
+            System.out.println("Game " + gameCode + " started.");
+        } else {
+            System.out.println("Game already started.");
+        }
     }
 
-    private void createNewGame(int numTeams, int playersPerTeam, int numQuestions) {
-        String gameCode = generateGameCode();
+    private static boolean parseFilterOption(String option, QuestionFilter filter) {
+        if (option.startsWith("tag=")) {
+            filter.addTag(option.substring(4));
+        } else if (option.startsWith("points>=")) {
+            filter.setMinPoints(Integer.parseInt(option.substring(8)));
+        } else if (option.startsWith("points<=")) {
+            filter.setMaxPoints(Integer.parseInt(option.substring(8)));
+        } else if (option.startsWith("points=")) {
+            int points = Integer.parseInt(option.substring(7));
+            filter.setMinPoints(points);
+            filter.setMaxPoints(points);
+        } else if (option.startsWith("options=")) {
+            filter.setOptionCount(Integer.parseInt(option.substring(8)));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private void createNewGame(int numTeams, int playersPerTeam, int numQuestions, QuestionFilter filter,
+            Long seed) {
+        QuestionBank bank = questionBanks.current();
+        int[] ids = bank.getCatalog().select(filter, numQuestions, QuestionSampler.random(seed));
+        if (ids.length == 0) {
+            System.out.println("No questions match " + filter + ".");
+            return;
+        }
+        if (ids.length < numQuestions) {
+            System.out.println("Only " + ids.length + " questions match " + filter + ".");
+            numQuestions = ids.length;
+        }
+        String gameCode = games.allocateCode();
+        if (gameCode == null) {
+            System.out.println("No free game codes; wait for finished games to be evicted.");
+            return;
+        }
         GameState game = new GameState(gameCode, numTeams, playersPerTeam, numQuestions);
-        game.setQuestions(availableQuestions);
-        activeGames.put(gameCode, game);
+        game.setQuestions(bank, ids);
+        if (journal != null) {
+            game.setJournal(journal);
+        }
+        games.register(game);
         System.out.println("Created game " + gameCode + " for " + numTeams + " teams with " + playersPerTeam
                 + " players per team and " + numQuestions + " questions.");
     }
 
-    private String generateGameCode() {
-        return String.valueOf((int) (Math.random() * 9000) + 1000);
-    }
-
     private void listGames() {
-        if (activeGames.isEmpty()) {
+        List<GameState> live = games.games();
+        if (live.isEmpty()) {
             System.out.println("No active games.");
         } else {
-            for (GameState game : activeGames.values()) {
-                System.out.printf("Game %s: %d players, %s\n",
+            for (GameState game : live) {
+                System.out.printf("Game %s: %d players, %s (%s), questions v%d\n",
                         game.getGameCode(),
                         game.getPlayers().size(),
-                        game.isGameStarted() ? "Running" : "Waiting");
+                        games.lifecycleOf(game),
+                        game.getPhase(),
+                        game.getQuestionBankVersion());
             }
         }
+        System.out.println(games.describe());
+    }
+
+    private void printResults(String gameCode) {
+        if (gameCode != null) {
+            ArchivedGame result = games.result(gameCode);
+            System.out.print(result == null ? "No results for game " + gameCode + ".\n" : result.format());
+            return;
+        }
+        List<ArchivedGame> results = games.results();
+        if (results.isEmpty()) {
+            System.out.println("No finished games.");
+        }
+        for (ArchivedGame result : results) {
+            System.out.println(result.summary());
+        }
+    }
+
+    private void printConnectionStats(String gameCode) {
+        GameState game = games.get(gameCode);
+        if (game == null) {
+            System.out.println("Game not found.");
+            return;
+        }
+        for (Map.Entry<String, ClientConnection> entry : game.getConnections().entrySet()) {
+            System.out.printf("  %s: %s\n", entry.getKey(), entry.getValue().getOutboundQueue().describe());
+        }
     }
 
     private void listenForConnections() {
         try (ServerSocket serverSocket = new ServerSocket(PORT)) {
             while (running) {
                 Socket socket = serverSocket.accept();
-                DealWithClient clientTask = new DealWithClient(socket, this);
+                DealWithClient clientTask = new DealWithClient(socket, this, clientExecutor);
                 clientExecutor.submit(clientTask);
             }
         } catch (IOException e) {
@@ -143,6 +332,14 @@ public class Server {
     }
 
     public GameState getGame(String gameCode) {
-        return activeGames.get(gameCode);
+        return games.get(gameCode);
+    }
+
+    public HeartbeatMonitor getHeartbeatMonitor() {
+        return heartbeatMonitor;
+    }
+
+    public OutboundQueue newOutboundQueue() {
+        return new OutboundQueue(OUTBOUND_CAPACITY, OVERFLOW_POLICY);
     }
 }
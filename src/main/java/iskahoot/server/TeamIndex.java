@@ -0,0 +1,124 @@
+package iskahoot.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Team membership built as players join, plus running per-team aggregates. Round
+// counters are bumped as answers arrive, so deciding a team round costs O(teams).
+public class TeamIndex {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private int[][] members = new int[0][];
+    private int[] sizes = new int[0];
+    private int[] teamOfSlot = new int[0];
+
+    private AtomicIntegerArray scores = new AtomicIntegerArray(0);
+    private AtomicIntegerArray correctAnswers = new AtomicIntegerArray(0);
+    private AtomicIntegerArray roundAnswered = new AtomicIntegerArray(0);
+    private AtomicIntegerArray roundCorrect = new AtomicIntegerArray(0);
+
+    // Join-time only; callers serialize joins.
+    public int add(int slot, String teamName) {
+        Integer id = ids.get(teamName);
+        if (id == null) {
+            id = names.size();
+            ids.put(teamName, id);
+            names.add(teamName);
+            members = Arrays.copyOf(members, id + 1);
+            members[id] = new int[4];
+            sizes = Arrays.copyOf(sizes, id + 1);
+        }
+        if (sizes[id] == members[id].length) {
+            members[id] = Arrays.copyOf(members[id], sizes[id] * 2);
+        }
+        members[id][sizes[id]++] = slot;
+        if (slot >= teamOfSlot.length) {
+            teamOfSlot = Arrays.copyOf(teamOfSlot, Math.max(slot + 1, teamOfSlot.length * 2));
+        }
+        teamOfSlot[slot] = id;
+        return id;
+    }
+
+    // Called once when the game starts; membership is fixed from then on.
+    public void freeze() {
+        int count = names.size();
+        for (int t = 0; t < count; t++) {
+            members[t] = Arrays.copyOf(members[t], sizes[t]);
+        }
+        scores = new AtomicIntegerArray(count);
+        correctAnswers = new AtomicIntegerArray(count);
+        roundAnswered = new AtomicIntegerArray(count);
+        roundCorrect = new AtomicIntegerArray(count);
+    }
+
+    public int count() {
+        return names.size();
+    }
+
+    public String name(int team) {
+        return names.get(team);
+    }
+
+    public int teamOf(int slot) {
+        return teamOfSlot[slot];
+    }
+
+    public int[] members(int team) {
+        return members[team];
+    }
+
+    public void startRound() {
+        for (int t = 0; t < roundAnswered.length(); t++) {
+            roundAnswered.set(t, 0);
+            roundCorrect.set(t, 0);
+        }
+    }
+
+    public void recordAnswer(int slot, boolean correct) {
+        int team = teamOfSlot[slot];
+        roundAnswered.incrementAndGet(team);
+        if (correct) {
+            roundCorrect.incrementAndGet(team);
+        }
+    }
+
+    public boolean allCorrect(int team) {
+        return roundCorrect.get(team) == members[team].length;
+    }
+
+    public boolean anyCorrect(int team) {
+        return roundCorrect.get(team) > 0;
+    }
+
+    public boolean allAnswered(int team) {
+        return roundAnswered.get(team) == members[team].length;
+    }
+
+    // Running totals are only touched by the scoring phase, which may split a round
+    // across several threads.
+    public void addScore(int team, int points) {
+        scores.addAndGet(team, points);
+    }
+
+    public void addCorrect(int team) {
+        correctAnswers.incrementAndGet(team);
+    }
+
+    // Recovery only, after freeze().
+    public void restoreTotals(int team, int score, int correct) {
+        scores.set(team, score);
+        correctAnswers.set(team, correct);
+    }
+
+    public int score(int team) {
+        return scores.get(team);
+    }
+
+    public int correctAnswers(int team) {
+        return correctAnswers.get(team);
+    }
+}
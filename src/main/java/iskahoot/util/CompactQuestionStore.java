@@ -0,0 +1,117 @@
+package iskahoot.util;
+
+import iskahoot.model.Question;
+import iskahoot.model.QuestionStore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Questions packed into a few flat arrays: every string is UTF-8 in one shared blob,
+// and a question is a run of strings (text first, then the options, then the tags).
+// A Question object is only built by get().
+public class CompactQuestionStore implements QuestionStore {
+    private byte[] blob = new byte[4096];
+    private int blobSize = 0;
+    private int[] stringEnds = new int[256];
+    private int stringCount = 0;
+    // Question i owns strings firstString[i] .. firstString[i + 1] - 1.
+    private int[] firstString = new int[65];
+    private int[] points = new int[64];
+    private byte[] correct = new byte[64];
+    private byte[] optionCounts = new byte[64];
+    private int size = 0;
+
+    public int add(String question, int questionPoints, int correctOption, String[] options, String[] tags) {
+        if (size == points.length) {
+            points = Arrays.copyOf(points, size * 2);
+            correct = Arrays.copyOf(correct, size * 2);
+            optionCounts = Arrays.copyOf(optionCounts, size * 2);
+            firstString = Arrays.copyOf(firstString, size * 2 + 1);
+        }
+        addString(question);
+        for (String option : options) {
+            addString(option);
+        }
+        for (String tag : tags) {
+            addString(tag);
+        }
+        points[size] = questionPoints;
+        correct[size] = (byte) correctOption;
+        optionCounts[size] = (byte) options.length;
+        firstString[size + 1] = stringCount;
+        return size++;
+    }
+
+    // Drops the spare capacity left over from loading.
+    public CompactQuestionStore trim() {
+        blob = Arrays.copyOf(blob, blobSize);
+        stringEnds = Arrays.copyOf(stringEnds, stringCount);
+        firstString = Arrays.copyOf(firstString, size + 1);
+        points = Arrays.copyOf(points, size);
+        correct = Arrays.copyOf(correct, size);
+        optionCounts = Arrays.copyOf(optionCounts, size);
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Question get(int id) {
+        checkId(id);
+        int first = firstString[id];
+        return new Question(string(first), points[id], correct[id], strings(first + 1, optionCount(id)), tags(id));
+    }
+
+    @Override
+    public int points(int id) {
+        checkId(id);
+        return points[id];
+    }
+
+    @Override
+    public int optionCount(int id) {
+        checkId(id);
+        return optionCounts[id] & 0xFF;
+    }
+
+    @Override
+    public String[] tags(int id) {
+        int from = firstString[id] + 1 + optionCount(id);
+        return strings(from, firstString[id + 1] - from);
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Question " + id + " of " + size);
+        }
+    }
+
+    private String[] strings(int from, int count) {
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = string(from + i);
+        }
+        return result;
+    }
+
+    private void addString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (blobSize + bytes.length > blob.length) {
+            blob = Arrays.copyOf(blob, Math.max(blob.length * 2, blobSize + bytes.length));
+        }
+        System.arraycopy(bytes, 0, blob, blobSize, bytes.length);
+        blobSize += bytes.length;
+        if (stringCount == stringEnds.length) {
+            stringEnds = Arrays.copyOf(stringEnds, stringCount * 2);
+        }
+        stringEnds[stringCount++] = blobSize;
+    }
+
+    private String string(int index) {
+        int start = index == 0 ? 0 : stringEnds[index - 1];
+        return new String(blob, start, stringEnds[index] - start, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,117 @@
+package iskahoot.util;
+
+import iskahoot.model.Question;
+import iskahoot.model.QuestionStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A question pack mapped read-only into memory. Nothing is decoded up front; get()
+// reads one record out of the mapping, and the pages are shared through the OS page
+// cache with any other process that maps the same pack.
+public class MappedQuestionStore implements QuestionStore {
+    private final MappedByteBuffer pack;
+    private final int count;
+    private final int indexOffset;
+
+    private MappedQuestionStore(MappedByteBuffer pack, int count, int indexOffset) {
+        this.pack = pack;
+        this.count = count;
+        this.indexOffset = indexOffset;
+    }
+
+    public static MappedQuestionStore open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < QuestionPack.HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a question pack: " + path);
+            }
+            MappedByteBuffer pack = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (pack.getInt(0) != QuestionPack.MAGIC) {
+                throw new IOException("Not a question pack: " + path);
+            }
+            if (pack.getInt(4) != QuestionPack.VERSION) {
+                throw new IOException("Unsupported question pack version " + pack.getInt(4) + ": " + path);
+            }
+            int count = pack.getInt(8);
+            int indexOffset = pack.getInt(12);
+            if (count < 0 || indexOffset < QuestionPack.HEADER_SIZE
+                    || (long) indexOffset + 4L * (count + 1) != size) {
+                throw new IOException("Corrupt question pack index: " + path);
+            }
+            return new MappedQuestionStore(pack, count, indexOffset);
+        }
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public Question get(int id) {
+        ByteBuffer record = record(id);
+        int points = record.getInt();
+        int correct = record.get();
+        String[] options = new String[record.get() & 0xFF];
+        String[] tags = new String[record.get() & 0xFF];
+        String text = readString(record);
+        readStrings(record, options);
+        readStrings(record, tags);
+        return new Question(text, points, correct, options, tags);
+    }
+
+    @Override
+    public int points(int id) {
+        return record(id).getInt();
+    }
+
+    @Override
+    public int optionCount(int id) {
+        ByteBuffer record = record(id);
+        return record.get(record.position() + 5) & 0xFF;
+    }
+
+    // Skips over the text and options without decoding them.
+    @Override
+    public String[] tags(int id) {
+        ByteBuffer record = record(id);
+        int optionCount = record.get(record.position() + 5) & 0xFF;
+        String[] tags = new String[record.get(record.position() + 6) & 0xFF];
+        record.position(record.position() + 7);
+        for (int i = 0; i <= optionCount; i++) {
+            record.position(record.position() + 4 + record.getInt(record.position()));
+        }
+        readStrings(record, tags);
+        return tags;
+    }
+
+    // Each call reads through its own view, so the store is safe to use from any thread.
+    private ByteBuffer record(int id) {
+        if (id < 0 || id >= count) {
+            throw new IndexOutOfBoundsException("Question " + id + " of " + count);
+        }
+        int start = pack.getInt(indexOffset + 4 * id);
+        int end = pack.getInt(indexOffset + 4 * (id + 1));
+        ByteBuffer record = pack.duplicate();
+        record.limit(end).position(start);
+        return record;
+    }
+
+    private static void readStrings(ByteBuffer record, String[] into) {
+        for (int i = 0; i < into.length; i++) {
+            into[i] = readString(record);
+        }
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,37 @@
+package iskahoot.util;
+
+import iskahoot.model.QuestionStore;
+
+// One loaded version of the question bank: the store and its catalog. Banks are never
+// modified; a reload builds a new one and swaps it in.
+public final class QuestionBank {
+    private final int version;
+    private final QuestionCatalog catalog;
+    private final long loadedAt;
+
+    public QuestionBank(int version, QuestionStore store) {
+        this.version = version;
+        this.catalog = new QuestionCatalog(store);
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public QuestionStore getStore() {
+        return catalog.getStore();
+    }
+
+    public QuestionCatalog getCatalog() {
+        return catalog;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    public int size() {
+        return catalog.getStore().size();
+    }
+}
@@ -0,0 +1,176 @@
+package iskahoot.util;
+
+import iskahoot.model.QuestionStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+// Secondary indexes over a question store: a posting list and a bitset per tag, and
+// posting lists per points value and per option count. A filtered query walks the
+// smallest matching posting list and checks the other criteria per id, so its cost
+// follows the number of candidates rather than the bank size. Indexes are built on
+// the first filtered query unless buildIndexes() was called ahead of time;
+// unfiltered selection never needs them.
+public class QuestionCatalog {
+    private final QuestionStore store;
+
+    private Map<String, int[]> tagPostings;
+    private Map<String, BitSet> tagBits;
+    private TreeMap<Integer, int[]> pointsPostings;
+    private Map<Integer, int[]> optionPostings;
+    private int[] points;
+    private byte[] optionCounts;
+
+    public QuestionCatalog(QuestionStore store) {
+        this.store = store;
+    }
+
+    public QuestionStore getStore() {
+        return store;
+    }
+
+    // Up to k matching question ids, in random order.
+    public int[] select(QuestionFilter filter, int k, Random random) {
+        if (filter.isEmpty()) {
+            return QuestionSampler.sample(store.size(), k, random);
+        }
+        int[] matches = matching(filter);
+        int[] picks = QuestionSampler.sample(matches.length, k, random);
+        for (int i = 0; i < picks.length; i++) {
+            picks[i] = matches[picks[i]];
+        }
+        return picks;
+    }
+
+    public synchronized int[] matching(QuestionFilter filter) {
+        // Nothing to drive the scan from; every question matches.
+        if (filter.isEmpty()) {
+            int[] all = new int[store.size()];
+            Arrays.setAll(all, id -> id);
+            return all;
+        }
+        buildIndexes();
+
+        // Drive the scan from the smallest candidate set.
+        Collection<int[]> driver = null;
+        int driverSize = Integer.MAX_VALUE;
+        for (String tag : filter.getTags()) {
+            int[] posting = tagPostings.getOrDefault(tag, new int[0]);
+            if (posting.length < driverSize) {
+                driver = Collections.singletonList(posting);
+                driverSize = posting.length;
+            }
+        }
+        if (filter.getOptionCount() != QuestionFilter.ANY) {
+            int[] posting = optionPostings.getOrDefault(filter.getOptionCount(), new int[0]);
+            if (posting.length < driverSize) {
+                driver = Collections.singletonList(posting);
+                driverSize = posting.length;
+            }
+        }
+        if (filter.hasPointsRange() && filter.getMinPoints() <= filter.getMaxPoints()) {
+            Collection<int[]> range = pointsPostings
+                    .subMap(filter.getMinPoints(), true, filter.getMaxPoints(), true).values();
+            int size = 0;
+            for (int[] posting : range) {
+                size += posting.length;
+            }
+            if (size < driverSize) {
+                driver = range;
+                driverSize = size;
+            }
+        } else if (filter.hasPointsRange()) {
+            return new int[0];
+        }
+
+        int[] result = new int[driverSize];
+        int n = 0;
+        for (int[] posting : driver) {
+            for (int id : posting) {
+                if (matches(id, filter)) {
+                    result[n++] = id;
+                }
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private boolean matches(int id, QuestionFilter filter) {
+        if (points[id] < filter.getMinPoints() || points[id] > filter.getMaxPoints()) {
+            return false;
+        }
+        if (filter.getOptionCount() != QuestionFilter.ANY && (optionCounts[id] & 0xFF) != filter.getOptionCount()) {
+            return false;
+        }
+        for (String tag : filter.getTags()) {
+            BitSet bits = tagBits.get(tag);
+            if (bits == null || !bits.get(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized void buildIndexes() {
+        if (points != null) {
+            return;
+        }
+        int size = store.size();
+        int[] pointsById = new int[size];
+        byte[] optionsById = new byte[size];
+        Map<String, List<Integer>> tags = new HashMap<>();
+        Map<Integer, List<Integer>> byPoints = new HashMap<>();
+        Map<Integer, List<Integer>> byOptions = new HashMap<>();
+        for (int id = 0; id < size; id++) {
+            pointsById[id] = store.points(id);
+            optionsById[id] = (byte) store.optionCount(id);
+            byPoints.computeIfAbsent(pointsById[id], k -> new ArrayList<>()).add(id);
+            byOptions.computeIfAbsent(store.optionCount(id), k -> new ArrayList<>()).add(id);
+            for (String tag : store.tags(id)) {
+                List<Integer> posting = tags.computeIfAbsent(tag, k -> new ArrayList<>());
+                // A tag listed twice on one question is indexed once.
+                if (posting.isEmpty() || posting.get(posting.size() - 1) != id) {
+                    posting.add(id);
+                }
+            }
+        }
+
+        tagPostings = new HashMap<>();
+        tagBits = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : tags.entrySet()) {
+            int[] posting = toArray(entry.getValue());
+            BitSet bits = new BitSet(size);
+            for (int id : posting) {
+                bits.set(id);
+            }
+            tagPostings.put(entry.getKey(), posting);
+            tagBits.put(entry.getKey(), bits);
+        }
+        pointsPostings = new TreeMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : byPoints.entrySet()) {
+            pointsPostings.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        optionPostings = new HashMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : byOptions.entrySet()) {
+            optionPostings.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        optionCounts = optionsById;
+        points = pointsById;
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+}
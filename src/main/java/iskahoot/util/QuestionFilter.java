@@ -0,0 +1,74 @@
+package iskahoot.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Criteria for picking questions: every tag must be present, points must fall in
+// [minPoints, maxPoints] and, if set, the question must have exactly optionCount options.
+public class QuestionFilter {
+    public static final int ANY = -1;
+
+    private final List<String> tags = new ArrayList<>();
+    private int minPoints = Integer.MIN_VALUE;
+    private int maxPoints = Integer.MAX_VALUE;
+    private int optionCount = ANY;
+
+    public void addTag(String tag) {
+        tags.add(tag);
+    }
+
+    public void setMinPoints(int minPoints) {
+        this.minPoints = minPoints;
+    }
+
+    public void setMaxPoints(int maxPoints) {
+        this.maxPoints = maxPoints;
+    }
+
+    public void setOptionCount(int optionCount) {
+        this.optionCount = optionCount;
+    }
+
+    public List<String> getTags() {
+        return Collections.unmodifiableList(tags);
+    }
+
+    public int getMinPoints() {
+        return minPoints;
+    }
+
+    public int getMaxPoints() {
+        return maxPoints;
+    }
+
+    public int getOptionCount() {
+        return optionCount;
+    }
+
+    public boolean hasPointsRange() {
+        return minPoints != Integer.MIN_VALUE || maxPoints != Integer.MAX_VALUE;
+    }
+
+    public boolean isEmpty() {
+        return tags.isEmpty() && !hasPointsRange() && optionCount == ANY;
+    }
+
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        for (String tag : tags) {
+            parts.add("tag=" + tag);
+        }
+        if (minPoints != Integer.MIN_VALUE) {
+            parts.add("points>=" + minPoints);
+        }
+        if (maxPoints != Integer.MAX_VALUE) {
+            parts.add("points<=" + maxPoints);
+        }
+        if (optionCount != ANY) {
+            parts.add("options=" + optionCount);
+        }
+        return parts.isEmpty() ? "any question" : String.join(" ", parts);
+    }
+}
@@ -0,0 +1,11 @@
+package iskahoot.util;
+
+import java.io.IOException;
+
+// A question bank that parses as JSON but breaks the question rules; the message
+// names the offending question and its JSON path.
+public class QuestionFormatException extends IOException {
+    public QuestionFormatException(String message) {
+        super(message);
+    }
+}
@@ -2,59 +2,188 @@ package iskahoot.util;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import iskahoot.model.Question;
+import iskahoot.model.QuestionStore;
 
-import java.io.FileReader;
+import java.io.BufferedReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 
+// Questions are streamed one at a time with a JsonReader straight into a
+// CompactQuestionStore, so the file is never held in memory as a whole.
 public class QuestionLoader {
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // Answers are kept in a byte per player (see RoundAnswers).
+    private static final int MAX_OPTIONS = 128;
+    private static final int MAX_TAGS = 255;
 
     private static class QuestionsWrapper {
         List<Question> questions;
     }
 
+    // Opens a compiled question pack (see QuestionPack) by mapping it, or streams a JSON bank.
+    public static QuestionStore openBank(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+            }
+            if (!magic.hasRemaining() && magic.getInt(0) == QuestionPack.MAGIC) {
+                return MappedQuestionStore.open(path);
+            }
+        }
+        return loadStore(path);
+    }
+
     // Carregar perguntas de um JSON file
-    public static List<Question> loadQuestionsFromFile(String filePath) throws IOException {
-        try (FileReader reader = new FileReader(filePath)) {
-            return loadQuestionsFromReader(reader);
+    public static CompactQuestionStore loadStore(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                Reader reader = new BufferedReader(
+                        Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1), READ_BUFFER_SIZE)) {
+            return loadStore(reader);
         }
     }
 
-    // Carregar perguntas de um Reader
-    public static List<Question> loadQuestionsFromReader(Reader reader) {
-        StringBuilder sb = new StringBuilder();
+    public static CompactQuestionStore loadStore(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        CompactQuestionStore store = new CompactQuestionStore();
         try {
-            int c;
-            while ((c = reader.read()) != -1) {
-                sb.append((char) c);
+            if (json.peek() == JsonToken.BEGIN_ARRAY) {
+                readQuestions(json, store);
+            } else {
+                json.beginObject();
+                while (json.hasNext()) {
+                    if ("questions".equals(json.nextName())) {
+                        readQuestions(json, store);
+                    } else {
+                        json.skipValue();
+                    }
+                }
+                json.endObject();
+            }
+        } catch (IllegalStateException | NumberFormatException e) {
+            // Wrong value types; Gson's message already carries line, column and path.
+            throw new QuestionFormatException(e.getMessage());
+        }
+        return store.trim();
+    }
+
+    private static void readQuestions(JsonReader json, CompactQuestionStore store) throws IOException {
+        List<String> options = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            readQuestion(json, store, options, tags);
+        }
+        json.endArray();
+    }
+
+    private static void readQuestion(JsonReader json, CompactQuestionStore store, List<String> options,
+            List<String> tags) throws IOException {
+        String path = json.getPath();
+        String text = null;
+        int points = 0;
+        int correct = -1;
+        options.clear();
+        tags.clear();
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "question":
+                    text = json.nextString();
+                    break;
+                case "points":
+                    points = json.nextInt();
+                    break;
+                case "correct":
+                    correct = json.nextInt();
+                    break;
+                case "options":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        options.add(json.nextString());
+                    }
+                    json.endArray();
+                    break;
+                case "tags":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        tags.add(json.nextString());
+                    }
+                    json.endArray();
+                    break;
+                default:
+                    json.skipValue();
             }
-        } catch (IOException e) {
-            throw new RuntimeException("Could not read from reader", e);
         }
-        String json = sb.toString();
+        json.endObject();
 
-        QuestionsWrapper wrapper = gson.fromJson(json, QuestionsWrapper.class);
-        if (wrapper != null && wrapper.questions != null) {
-            return wrapper.questions;
+        if (text == null) {
+            throw invalid(path, "missing \"question\"");
         }
+        if (options.isEmpty() || options.size() > MAX_OPTIONS) {
+            throw invalid(path, "expected 1 to " + MAX_OPTIONS + " options but found " + options.size());
+        }
+        if (correct < 0 || correct >= options.size()) {
+            throw invalid(path, "\"correct\" must be an option index but was " + correct);
+        }
+        if (points < 0) {
+            throw invalid(path, "\"points\" must not be negative");
+        }
+        if (tags.size() > MAX_TAGS) {
+            throw invalid(path, "at most " + MAX_TAGS + " tags are allowed");
+        }
+        store.add(text, points, correct, options.toArray(new String[0]), tags.toArray(new String[0]));
+    }
 
-        return new ArrayList<>();
+    private static QuestionFormatException invalid(String path, String reason) {
+        return new QuestionFormatException("Invalid question at " + path + ": " + reason);
+    }
+
+    public static List<Question> loadQuestionsFromFile(String filePath) throws IOException {
+        return toList(loadStore(Paths.get(filePath)));
+    }
+
+    // Carregar perguntas de um Reader
+    public static List<Question> loadQuestionsFromReader(Reader reader) {
+        try {
+            return toList(loadStore(reader));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read from reader", e);
+        }
     }
 
     // Carregar perguntas de uma string JSON
     public static List<Question> loadQuestionsFromString(String jsonString) {
-        try (Reader reader = new java.io.StringReader(jsonString)) {
+        try (Reader reader = new StringReader(jsonString)) {
             return loadQuestionsFromReader(reader);
         } catch (IOException e) {
             return new ArrayList<>();
         }
     }
 
+    private static List<Question> toList(QuestionStore store) {
+        List<Question> questions = new ArrayList<>(store.size());
+        for (int id = 0; id < store.size(); id++) {
+            questions.add(store.get(id));
+        }
+        return questions;
+    }
+
     // Salvar perguntas para um arquivo JSON
     public static void saveQuestionsToFile(List<Question> questions, String filePath) throws IOException {
         QuestionsWrapper wrapper = new QuestionsWrapper();
@@ -64,4 +193,4 @@ public class QuestionLoader {
             gson.toJson(wrapper, writer);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+package iskahoot.util;
+
+import iskahoot.model.Question;
+import iskahoot.model.QuestionStore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Binary question pack: a header, an offset index and one record per question.
+//
+//   header  [magic][version][count][indexOffset]                  (4 ints)
+//   record  [points int][correct byte][options byte][tags byte][text][options...][tags...]
+//   string  [length int][UTF-8 bytes]
+//   index   count + 1 record offsets; the last one marks the end of the records
+//
+// Packs are built offline from the JSON bank and opened with MappedQuestionStore.
+public class QuestionPack {
+    public static final int MAGIC = 0x494B5150; // "IKQP"
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 16;
+
+    public static void write(QuestionStore store, Path target) throws IOException {
+        int count = store.size();
+        int[] offsets = new int[count + 1];
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE);
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            long position = HEADER_SIZE;
+            for (int id = 0; id < count; id++) {
+                offsets[id] = checkOffset(position);
+                position += writeRecord(out, store.get(id));
+            }
+            offsets[count] = checkOffset(position);
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(offsets[count]).flip();
+            channel.write(header, 0);
+        }
+    }
+
+    private static int writeRecord(DataOutputStream out, Question q) throws IOException {
+        String[] options = q.getOptions();
+        String[] tags = q.getTags();
+        out.writeInt(q.getPoints());
+        out.writeByte(q.getCorrect());
+        out.writeByte(options.length);
+        out.writeByte(tags.length);
+        int size = 7 + writeString(out, q.getQuestion());
+        for (String option : options) {
+            size += writeString(out, option);
+        }
+        for (String tag : tags) {
+            size += writeString(out, tag);
+        }
+        return size;
+    }
+
+    private static int writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return 4 + bytes.length;
+    }
+
+    // A single mapping covers the whole pack, so offsets stay ints.
+    private static int checkOffset(long position) throws IOException {
+        if (position > Integer.MAX_VALUE) {
+            throw new IOException("Question pack would exceed 2 GB");
+        }
+        return (int) position;
+    }
+
+    // Compiles a JSON bank: QuestionPack <questions.json> <questions.pack>
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: QuestionPack <questions.json> <questions.pack>");
+            System.exit(1);
+        }
+        CompactQuestionStore store = QuestionLoader.loadStore(Paths.get(args[0]));
+        write(store, Paths.get(args[1]));
+        System.out.println("Wrote " + store.size() + " questions to " + args[1]);
+    }
+}
@@ -0,0 +1,31 @@
+package iskahoot.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Picks k distinct indexes out of n in O(k): a partial Fisher-Yates shuffle over a
+// virtual 0..n-1 array where only the swapped cells are stored.
+public final class QuestionSampler {
+    private QuestionSampler() {
+    }
+
+    public static int[] sample(int n, int k, Random random) {
+        int count = Math.max(0, Math.min(n, k));
+        int[] picked = new int[count];
+        Map<Integer, Integer> swapped = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(n - i);
+            int atJ = swapped.getOrDefault(j, j);
+            picked[i] = atJ;
+            swapped.put(j, swapped.getOrDefault(i, i));
+        }
+        return picked;
+    }
+
+    // Seeded draws repeat exactly; unseeded ones use the calling thread's generator.
+    public static Random random(Long seed) {
+        return seed == null ? ThreadLocalRandom.current() : new Random(seed);
+    }
+}
@@ -0,0 +1,178 @@
+package iskahoot.net;
+
+import iskahoot.model.PlayerSnapshot;
+import iskahoot.model.PlayerStanding;
+import iskahoot.model.Question;
+import iskahoot.model.ScoreBoard;
+import iskahoot.model.ScoreBoardDelta;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryCodecTest {
+    private static final long TIMESTAMP = 1700000000000L;
+
+    private static Message roundTrip(Message msg, WireFormat format, int version) throws IOException {
+        byte[] frame = MessageCodec.encodeFrame(msg, format, version);
+        assertEquals(frame.length - MessageCodec.HEADER_SIZE,
+                ((frame[0] & 0xFF) << 24) | ((frame[1] & 0xFF) << 16) | ((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF));
+        return MessageCodec.decode(frame, MessageCodec.HEADER_SIZE, frame.length - MessageCodec.HEADER_SIZE);
+    }
+
+    private static Message roundTrip(Message msg) throws IOException {
+        return roundTrip(msg, WireFormat.BINARY, BinaryCodec.VERSION);
+    }
+
+    private static ScoreBoard board() {
+        List<PlayerSnapshot> players = Arrays.asList(
+                new PlayerSnapshot("ana", "Azul", 30, 3, 3),
+                new PlayerSnapshot("rui", "Verde", 20, 3, 2),
+                new PlayerSnapshot("zé", "Azul", 5, 2, 1));
+        Map<String, Integer> teams = new LinkedHashMap<>();
+        teams.put("Azul", 35);
+        teams.put("Verde", 20);
+        return new ScoreBoard(players, teams, 3, 10, TIMESTAMP, 7, 2);
+    }
+
+    private static void assertSameBoard(ScoreBoard expected, ScoreBoard actual) {
+        assertEquals(expected.getCurrentQuestion(), actual.getCurrentQuestion());
+        assertEquals(expected.getTotalQuestions(), actual.getTotalQuestions());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getTeamScores(), actual.getTeamScores());
+        assertEquals(expected.getPlayers().size(), actual.getPlayers().size());
+        for (int i = 0; i < expected.getPlayers().size(); i++) {
+            PlayerSnapshot p = expected.getPlayers().get(i);
+            PlayerSnapshot q = actual.getPlayers().get(i);
+            assertEquals(p.getUsername(), q.getUsername());
+            assertTrue(p.sameStats(q), p + " vs " + q);
+        }
+    }
+
+    @Test
+    void smallMessagesRoundTrip() throws IOException {
+        assertEquals(3, ((AnswerMessage) roundTrip(new AnswerMessage(3))).getAnswerIndex());
+        assertEquals(12, ((GameStartMessage) roundTrip(new GameStartMessage(12))).getTotalQuestions());
+        assertEquals(TIMESTAMP, ((HeartbeatMessage) roundTrip(new HeartbeatMessage(TIMESTAMP))).getSentAt());
+        assertTrue(((ScoreBoardRequest) roundTrip(new ScoreBoardRequest(true))).isKeyframe());
+        assertFalse(((ScoreBoardRequest) roundTrip(new ScoreBoardRequest(false))).isKeyframe());
+
+        PlayerStanding standing = ((StandingMessage) roundTrip(
+                new StandingMessage(new PlayerStanding(2, 40, 9, "Azul", 1, 70, 3)))).getStanding();
+        assertEquals(2, standing.getRank());
+        assertEquals(40, standing.getScore());
+        assertEquals(9, standing.getTotalPlayers());
+        assertEquals("Azul", standing.getTeamName());
+        assertEquals(1, standing.getTeamRank());
+        assertEquals(70, standing.getTeamScore());
+        assertEquals(3, standing.getTotalTeams());
+    }
+
+    @Test
+    void joinMessagesCarryTheTokenFromResumeVersionOn() throws IOException {
+        JoinRequest request = (JoinRequest) roundTrip(
+                new JoinRequest("ana", "Azul", "1234", BinaryCodec.VERSION, "token"));
+        assertEquals("ana", request.getUsername());
+        assertEquals("Azul", request.getTeamName());
+        assertEquals("1234", request.getGameCode());
+        assertEquals(BinaryCodec.VERSION, request.getProtocolVersion());
+        assertEquals("token", request.getResumeToken());
+
+        JoinRequest old = (JoinRequest) roundTrip(
+                new JoinRequest("ana", "Azul", "1234", BinaryCodec.RESUME_VERSION - 1, "token"));
+        assertNull(old.getResumeToken());
+
+        JoinResponse response = (JoinResponse) roundTrip(
+                new JoinResponse(true, "Bem-vindo", BinaryCodec.VERSION, "token"));
+        assertTrue(response.isSuccess());
+        assertEquals("Bem-vindo", response.getMessage());
+        assertEquals("token", response.getResumeToken());
+    }
+
+    @Test
+    void questionKeepsItsBodyAndRemainingTime() throws IOException {
+        Question q = new Question("O que é uma thread?", 5, 3,
+                new String[] { "Processo", "Aplicação", "Programa", "Processo Ligeiro" });
+        QuestionMessage decoded = (QuestionMessage) roundTrip(new QuestionMessage(q, 4, 10, 27500));
+
+        assertEquals(4, decoded.getQuestionIndex());
+        assertEquals(10, decoded.getTotalQuestions());
+        assertEquals(27500, decoded.getRemainingMillis());
+        assertEquals(q.getQuestion(), decoded.getQuestion().getQuestion());
+        assertEquals(q.getPoints(), decoded.getQuestion().getPoints());
+        assertEquals(q.getCorrect(), decoded.getQuestion().getCorrect());
+        assertArrayEquals(q.getOptions(), decoded.getQuestion().getOptions());
+    }
+
+    @Test
+    void rankedBoardRoundTripsWithVersionAndReply() throws IOException {
+        ScoreBoard board = board();
+        ScoreBoardMessage decoded = (ScoreBoardMessage) roundTrip(new ScoreBoardMessage(board, true, 42, true));
+
+        assertTrue(decoded.isFinal());
+        assertEquals(42, decoded.getVersion());
+        assertTrue(decoded.isReply());
+        assertSameBoard(board, decoded.getScoreBoard());
+        assertEquals(7, decoded.getScoreBoard().getPlayerCount());
+        assertEquals(2, decoded.getScoreBoard().getTeamCount());
+    }
+
+    @Test
+    void olderPeersGetThePlainBoardWithTeamsTotalledFromPlayers() throws IOException {
+        ScoreBoard board = board();
+        byte[] frame = MessageCodec.encodeFrame(new ScoreBoardMessage(board, false, 42),
+                WireFormat.BINARY, BinaryCodec.RANKED_BOARD_VERSION - 1);
+        assertEquals(BinaryCodec.SCOREBOARD, frame[MessageCodec.HEADER_SIZE]);
+
+        ScoreBoardMessage decoded = (ScoreBoardMessage) roundTrip(new ScoreBoardMessage(board, false, 42),
+                WireFormat.BINARY, BinaryCodec.RANKED_BOARD_VERSION - 1);
+        assertFalse(decoded.isFinal());
+        assertEquals(0, decoded.getVersion());
+        assertFalse(decoded.isReply());
+        assertSameBoard(board, decoded.getScoreBoard());
+    }
+
+    @Test
+    void deltaAppliedToTheBaseGivesTheNextBoard() throws IOException {
+        ScoreBoard base = board();
+        List<PlayerSnapshot> players = Arrays.asList(
+                new PlayerSnapshot("rui", "Verde", 40, 4, 3),
+                new PlayerSnapshot("ana", "Azul", 30, 4, 3),
+                new PlayerSnapshot("zé", "Azul", 5, 3, 1));
+        Map<String, Integer> teams = new LinkedHashMap<>();
+        teams.put("Verde", 40);
+        teams.put("Azul", 35);
+        ScoreBoard next = new ScoreBoard(players, teams, 4, 10, TIMESTAMP + 1000, 7, 2);
+
+        ScoreBoardDeltaMessage decoded = (ScoreBoardDeltaMessage) roundTrip(
+                new ScoreBoardDeltaMessage(6, 5, ScoreBoardDelta.between(base, next)));
+        assertEquals(6, decoded.getVersion());
+        assertEquals(5, decoded.getBaseVersion());
+        assertSameBoard(next, decoded.getDelta().applyTo(base));
+    }
+
+    @Test
+    void serializedFramesRoundTripToo() throws IOException {
+        ScoreBoard board = board();
+        ScoreBoardMessage decoded = (ScoreBoardMessage) roundTrip(new ScoreBoardMessage(board, true, 42),
+                WireFormat.SERIALIZED, 0);
+        assertTrue(decoded.isFinal());
+        assertSameBoard(board, decoded.getScoreBoard());
+    }
+
+    @Test
+    void unknownTagIsRejected() {
+        byte[] data = { 99 };
+        assertThrows(IOException.class, () -> BinaryCodec.decode(data, 0, data.length));
+    }
+}
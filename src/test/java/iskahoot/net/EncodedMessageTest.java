@@ -0,0 +1,50 @@
+package iskahoot.net;
+
+import iskahoot.model.PlayerSnapshot;
+import iskahoot.model.ScoreBoard;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EncodedMessageTest {
+    private static Message[] messages() {
+        ScoreBoard board = new ScoreBoard(Arrays.asList(new PlayerSnapshot("ana", "Azul", 30, 3, 3),
+                new PlayerSnapshot("rui", "Verde", 20, 3, 2)), 3, 10, 1700000000000L);
+        return new Message[] { new GameStartMessage(3), new ScoreBoardMessage(board, false),
+                new ScoreBoardMessage(board, true), new HeartbeatMessage(1) };
+    }
+
+    // Legacy clients read one ObjectInputStream for the whole connection.
+    @Test
+    void cachedObjectBytesMatchWhatAnObjectStreamWrites() throws Exception {
+        ByteArrayOutputStream cached = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(cached);
+        header.writeShort(ObjectStreamConstants.STREAM_MAGIC);
+        header.writeShort(ObjectStreamConstants.STREAM_VERSION);
+
+        ByteArrayOutputStream direct = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(direct);
+        for (Message msg : messages()) {
+            new EncodedMessage(msg).writeObjectTo(cached);
+            out.writeObject(msg);
+            out.reset();
+        }
+        out.flush();
+        assertArrayEquals(direct.toByteArray(), cached.toByteArray());
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(cached.toByteArray()))) {
+            for (Message msg : messages()) {
+                assertEquals(msg.getClass(), in.readObject().getClass());
+            }
+        }
+    }
+}
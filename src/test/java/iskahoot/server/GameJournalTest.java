@@ -0,0 +1,145 @@
+package iskahoot.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameJournalTest {
+    private static final String GAME = "1234";
+
+    @TempDir
+    Path dir;
+
+    // A segment size of one byte rolls before every batch.
+    private GameJournal open(long segmentBytes) throws IOException {
+        return GameJournal.open(dir, JournalDurability.BATCH, segmentBytes, 10, 1024);
+    }
+
+    private List<JournalEvent> readAll() throws IOException {
+        List<JournalEvent> events = new ArrayList<>();
+        try (JournalReader reader = new JournalReader(dir)) {
+            JournalEvent event;
+            while ((event = reader.next()) != null) {
+                events.add(event);
+            }
+            assertEquals(0, reader.getTornSegments());
+        }
+        return events;
+    }
+
+    // Separate batches, so each one lands in its own segment.
+    private static void appendAnswers(GameJournal journal, int from, int to) throws InterruptedException {
+        for (int i = from; i < to; i++) {
+            journal.append(JournalEvent.answer(GAME, i, 1, i % 4, 1));
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void eventsReadBackInOrderAcrossRolledSegments() throws Exception {
+        try (GameJournal journal = open(1)) {
+            // A live checkpoint keeps every later segment around.
+            journal.checkpoint(GAME, new byte[] { 1, 2, 3 });
+            appendAnswers(journal, 0, 10);
+            journal.append(JournalEvent.roundScored(GAME, 1, new int[] { 10, 0, 5 }));
+        }
+
+        assertTrue(JournalReader.segments(dir).size() > 1, "journal did not roll");
+        List<JournalEvent> events = readAll();
+        assertEquals(12, events.size());
+        assertEquals(JournalEvent.Type.CHECKPOINT, events.get(0).getType());
+        for (int i = 1; i <= 10; i++) {
+            JournalEvent answer = events.get(i);
+            assertEquals(JournalEvent.Type.ANSWER, answer.getType());
+            assertEquals(GAME, answer.getGameCode());
+            assertEquals(i - 1, answer.getSlot());
+            assertEquals((i - 1) % 4, answer.getValue());
+            assertArrayEquals(new int[] { 1, 1 }, answer.getValues());
+        }
+        JournalEvent scored = events.get(11);
+        assertEquals(JournalEvent.Type.ROUND_SCORED, scored.getType());
+        assertArrayEquals(new int[] { 10, 0, 5 }, scored.getValues());
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i).getSeq() > events.get(i - 1).getSeq());
+        }
+    }
+
+    @Test
+    void reopeningContinuesTheSequenceInANewSegment() throws Exception {
+        try (GameJournal journal = open(1 << 20)) {
+            journal.checkpoint(GAME, new byte[] { 1 });
+            appendAnswers(journal, 0, 3);
+        }
+        try (GameJournal journal = open(1 << 20)) {
+            appendAnswers(journal, 3, 5);
+        }
+
+        assertEquals(2, JournalReader.segments(dir).size());
+        List<JournalEvent> events = readAll();
+        assertEquals(6, events.size());
+        for (int i = 1; i < events.size(); i++) {
+            assertEquals(events.get(i - 1).getSeq() + 1, events.get(i).getSeq());
+        }
+    }
+
+    @Test
+    void checkpointsAreReplacedAndDropped() throws Exception {
+        try (GameJournal journal = open(1 << 20)) {
+            journal.checkpoint(GAME, new byte[] { 1 });
+            journal.checkpoint("5678", new byte[] { 9 });
+            journal.checkpoint(GAME, new byte[] { 2, 3 });
+        }
+        List<JournalEvent> checkpoints = JournalReader.checkpoints(dir);
+        assertEquals(2, checkpoints.size());
+        for (JournalEvent checkpoint : checkpoints) {
+            if (checkpoint.getGameCode().equals(GAME)) {
+                assertArrayEquals(new byte[] { 2, 3 }, checkpoint.getSnapshot());
+            }
+        }
+
+        try (GameJournal journal = open(1 << 20)) {
+            journal.checkpoint(GAME, null);
+        }
+        checkpoints = JournalReader.checkpoints(dir);
+        assertEquals(1, checkpoints.size());
+        assertEquals("5678", checkpoints.get(0).getGameCode());
+    }
+
+    @Test
+    void segmentsBeforeTheOldestCheckpointAreRemoved() throws Exception {
+        try (GameJournal journal = open(1)) {
+            journal.checkpoint(GAME, new byte[] { 1 });
+            appendAnswers(journal, 0, 5);
+            journal.checkpoint(GAME, new byte[] { 2 });
+            Thread.sleep(20);
+            appendAnswers(journal, 5, 8);
+            assertTrue(journal.describe().matches(".* [1-9][0-9]* segments removed"), journal.describe());
+        }
+
+        long checkpointSeq = JournalReader.checkpoints(dir).get(0).getSeq();
+        List<JournalEvent> events = readAll();
+        assertTrue(events.get(0).getSeq() <= checkpointSeq);
+        assertTrue(events.get(0).getSeq() > 1, "first segment was kept");
+        assertEquals(7, events.get(events.size() - 1).getSlot());
+    }
+
+    @Test
+    void appendsAfterCloseAreIgnored() throws Exception {
+        GameJournal journal = open(1 << 20);
+        journal.append(JournalEvent.gameStarted(GAME, 2));
+        journal.close();
+        journal.append(JournalEvent.gameEnded(GAME));
+
+        List<JournalEvent> events = readAll();
+        assertEquals(1, events.size());
+        assertEquals(JournalEvent.Type.GAME_STARTED, events.get(0).getType());
+    }
+}
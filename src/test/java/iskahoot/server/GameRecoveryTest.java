@@ -0,0 +1,146 @@
+package iskahoot.server;
+
+import iskahoot.model.Player;
+import iskahoot.net.EncodedMessage;
+import iskahoot.util.CompactQuestionStore;
+import iskahoot.util.QuestionBank;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameRecoveryTest {
+    private static final String GAME = "1234";
+    private static final int[] IDS = { 0, 1, 2, 3 };
+
+    @TempDir
+    Path dir;
+
+    private static final class NoConnection implements ClientConnection {
+        private int version;
+
+        @Override
+        public void send(EncodedMessage msg) {
+        }
+
+        @Override
+        public void setProtocolVersion(int version) {
+            this.version = version;
+        }
+
+        @Override
+        public int getProtocolVersion() {
+            return version;
+        }
+
+        @Override
+        public OutboundQueue getOutboundQueue() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void abort() {
+        }
+    }
+
+    private static QuestionBank bank(String firstQuestion) {
+        CompactQuestionStore store = new CompactQuestionStore();
+        store.add(firstQuestion, 5, 1, new String[] { "a", "b" }, new String[0]);
+        for (int i = 1; i < IDS.length; i++) {
+            store.add("Pergunta " + i, 3, 0, new String[] { "a", "b", "c" }, new String[0]);
+        }
+        return new QuestionBank(1, store.trim());
+    }
+
+    private GameJournal openJournal() throws IOException {
+        return GameJournal.open(dir, JournalDurability.BATCH, 1 << 20, 10, 1024);
+    }
+
+    // Created and joined through GameState, then played on in a second segment as the
+    // round loop would journal it: answers always ahead of their round's score.
+    private void playTwoRounds() throws IOException {
+        GameState game = new GameState(GAME, 2, 1, IDS.length);
+        game.setQuestions(bank("Pergunta 0"), IDS);
+        try (GameJournal journal = openJournal()) {
+            game.setJournal(journal);
+            game.addPlayer("ana", "Azul", new NoConnection());
+            game.addPlayer("rui", "Verde", new NoConnection());
+        }
+        try (GameJournal journal = openJournal()) {
+            journal.append(JournalEvent.gameStarted(GAME, 2));
+            journal.append(JournalEvent.questionOpened(GAME, 1));
+            journal.append(JournalEvent.answer(GAME, 0, 1, 1, 2));
+            journal.append(JournalEvent.answer(GAME, 1, 1, 0, 1));
+            journal.append(JournalEvent.roundScored(GAME, 1, new int[] { 10, 0 }));
+            journal.append(JournalEvent.questionOpened(GAME, 2));
+            journal.append(JournalEvent.roundScored(GAME, 2, new int[] { 3, 3 }));
+            // Open when the server went down; asked again after recovery.
+            journal.append(JournalEvent.questionOpened(GAME, 3));
+            journal.append(JournalEvent.answer(GAME, 0, 3, 0, 2));
+        }
+    }
+
+    private static Player player(GameState game, String username) {
+        for (Player p : game.getPlayers()) {
+            if (p.getUsername().equals(username)) {
+                return p;
+            }
+        }
+        throw new AssertionError("no player " + username);
+    }
+
+    @Test
+    void replaysTheJournalOnTopOfTheCheckpoint() throws IOException {
+        playTwoRounds();
+        assertEquals(2, JournalReader.segments(dir).size());
+
+        GameRecovery recovery = new GameRecovery(dir, bank("Pergunta 0"));
+        List<GameState> games = recovery.recover();
+
+        assertEquals(1, games.size());
+        GameState game = games.get(0);
+        assertEquals(GAME, game.getGameCode());
+        assertTrue(game.isGameStarted());
+
+        Player ana = player(game, "ana");
+        assertEquals("Azul", ana.getTeamName());
+        assertEquals(13, ana.getScore());
+        assertEquals(2, ana.getQuestionsAnswered());
+        assertEquals(2, ana.getCorrectAnswers());
+
+        Player rui = player(game, "rui");
+        assertEquals("Verde", rui.getTeamName());
+        assertEquals(3, rui.getScore());
+        assertEquals(2, rui.getQuestionsAnswered());
+        assertEquals(1, rui.getCorrectAnswers());
+        assertTrue(recovery.getStaleCheckpoints().isEmpty());
+    }
+
+    @Test
+    void gamesWhoseQuestionsChangedAreNotRecovered() throws IOException {
+        playTwoRounds();
+
+        GameRecovery recovery = new GameRecovery(dir, bank("Pergunta 0, reescrita"));
+        assertTrue(recovery.recover().isEmpty());
+        assertEquals(List.of(GAME), recovery.getStaleCheckpoints());
+    }
+
+    @Test
+    void endedGamesAreNotRecovered() throws IOException {
+        playTwoRounds();
+        try (GameJournal journal = openJournal()) {
+            journal.append(JournalEvent.gameEnded(GAME));
+        }
+
+        assertTrue(new GameRecovery(dir, bank("Pergunta 0")).recover().isEmpty());
+    }
+}
@@ -0,0 +1,95 @@
+package iskahoot.server;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LeaderboardTest {
+    // Board order by sorting: score descending, then id.
+    private static int[] expectedOrder(int[] scores) {
+        return IntStream.range(0, scores.length).boxed()
+                .sorted(Comparator.<Integer>comparingInt(id -> -scores[id]).thenComparingInt(id -> id))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void assertMatches(int[] scores, Leaderboard board) {
+        int[] order = expectedOrder(scores);
+        assertEquals(scores.length, board.size());
+        assertArrayEquals(order, board.top(scores.length));
+        assertArrayEquals(Arrays.copyOf(order, Math.min(3, order.length)), board.top(3));
+        for (int position = 0; position < order.length; position++) {
+            int id = order[position];
+            assertEquals(scores[id], board.score(id));
+            assertEquals(position, board.positionOf(id));
+            int higher = 0;
+            for (int score : scores) {
+                if (score > scores[id])
+                    higher++;
+            }
+            assertEquals(higher + 1, board.rankOf(id));
+        }
+    }
+
+    @Test
+    void startsWithEveryoneTiedInIdOrder() {
+        Leaderboard board = new Leaderboard(5);
+        assertArrayEquals(new int[] { 0, 1, 2, 3, 4 }, board.top(10));
+        assertEquals(1, board.rankOf(4));
+        assertEquals(4, board.positionOf(4));
+    }
+
+    @Test
+    void tiesShareACompetitionRank() {
+        Leaderboard board = new Leaderboard(4);
+        board.addScore(1, 10);
+        board.addScore(3, 10);
+        board.addScore(0, 5);
+
+        assertArrayEquals(new int[] { 1, 3, 0, 2 }, board.top(4));
+        assertEquals(1, board.rankOf(1));
+        assertEquals(1, board.rankOf(3));
+        assertEquals(3, board.rankOf(0));
+        assertEquals(4, board.rankOf(2));
+    }
+
+    @RepeatedTest(10)
+    void singleUpdatesMatchASortedBoard() {
+        Random random = new Random();
+        int[] scores = new int[200];
+        Leaderboard board = new Leaderboard(scores.length);
+        for (int i = 0; i < 2000; i++) {
+            int id = random.nextInt(scores.length);
+            int points = random.nextInt(20);
+            scores[id] += points;
+            board.addScore(id, points);
+        }
+        assertMatches(scores, board);
+    }
+
+    // Sparse rounds go through single updates, dense ones through the rebuild.
+    @RepeatedTest(10)
+    void roundUpdatesMatchASortedBoard() {
+        Random random = new Random();
+        int[] scores = new int[300];
+        Leaderboard board = new Leaderboard(scores.length);
+        for (int round = 0; round < 20; round++) {
+            int[] points = new int[scores.length];
+            double share = round % 2 == 0 ? 0.05 : 0.9;
+            for (int id = 0; id < points.length; id++) {
+                if (random.nextDouble() < share) {
+                    points[id] = 1 + random.nextInt(10);
+                    scores[id] += points[id];
+                }
+            }
+            board.addScores(points);
+            assertMatches(scores, board);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package iskahoot.server;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModifiedCountdownLatchTest {
+    private static final int BONUS_FACTOR = 2;
+    private static final int BONUS_COUNT = 3;
+    private static final int THREADS = 32;
+    private static final int PER_THREAD = 64;
+
+    @RepeatedTest(20)
+    void racingCountdownsHandOutEachBonusSlotOnce() throws Exception {
+        int count = THREADS * PER_THREAD;
+        ModifiedCountdownLatch latch = new ModifiedCountdownLatch(BONUS_FACTOR, BONUS_COUNT, 30, count);
+        AtomicInteger completions = new AtomicInteger();
+        CompletableFuture<Void> completed = latch.onCompletion().thenRun(completions::incrementAndGet);
+
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<int[]>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                results.add(pool.submit(() -> {
+                    int[] factors = new int[PER_THREAD];
+                    go.await();
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        factors[i] = latch.countdown();
+                    }
+                    return factors;
+                }));
+            }
+            go.countDown();
+
+            int bonuses = 0;
+            int plain = 0;
+            for (Future<int[]> result : results) {
+                for (int factor : result.get(10, TimeUnit.SECONDS)) {
+                    if (factor == BONUS_FACTOR) {
+                        bonuses++;
+                    } else {
+                        assertEquals(1, factor);
+                        plain++;
+                    }
+                }
+            }
+            assertEquals(BONUS_COUNT, bonuses);
+            assertEquals(count - BONUS_COUNT, plain);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        completed.get(10, TimeUnit.SECONDS);
+        assertEquals(1, completions.get());
+        assertEquals(0, latch.getCount());
+        // Arrivals past zero neither complete it again nor earn a bonus.
+        assertEquals(1, latch.countdown());
+        assertEquals(1, completions.get());
+    }
+
+    @Test
+    void timedAwaitReturnsOnceCountReachesZero() throws Exception {
+        ModifiedCountdownLatch latch = new ModifiedCountdownLatch(BONUS_FACTOR, BONUS_COUNT, 30, 2);
+        assertFalse(latch.await(50, TimeUnit.MILLISECONDS));
+
+        latch.countdown();
+        assertFalse(latch.await(50, TimeUnit.MILLISECONDS));
+        assertEquals(1, latch.getCount());
+
+        Thread arrival = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            latch.countdown();
+        });
+        arrival.start();
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        arrival.join();
+    }
+
+    @Test
+    void emptyLatchIsAlreadyComplete() throws Exception {
+        ModifiedCountdownLatch latch = new ModifiedCountdownLatch(BONUS_FACTOR, BONUS_COUNT, 30, 0);
+        assertTrue(latch.await(0, TimeUnit.MILLISECONDS));
+        assertTrue(latch.onCompletion().isDone());
+    }
+
+    @Test
+    void onCompletionCannotCompleteTheLatch() throws Exception {
+        ModifiedCountdownLatch latch = new ModifiedCountdownLatch(BONUS_FACTOR, BONUS_COUNT, 30, 1);
+        CompletableFuture<Void> observer = latch.onCompletion();
+        observer.complete(null);
+        assertFalse(latch.await(50, TimeUnit.MILLISECONDS));
+        assertFalse(latch.onCompletion().isDone());
+
+        latch.countdown();
+        assertTrue(latch.onCompletion().isDone());
+    }
+
+    @Test
+    void resetTurnsAwayEarlierGenerations() throws Exception {
+        ModifiedCountdownLatch latch = new ModifiedCountdownLatch(BONUS_FACTOR, BONUS_COUNT, 30, 0);
+        latch.reset(1, 2);
+        assertEquals(BONUS_FACTOR, latch.countdown(1));
+        CompletableFuture<Void> first = latch.onCompletion();
+
+        latch.reset(2, 1);
+        assertEquals(0, latch.countdown(1));
+        assertFalse(first.isDone());
+        assertEquals(1, latch.getCount());
+
+        // Bonus slots start over with the new generation.
+        assertEquals(BONUS_FACTOR, latch.countdown(2));
+        assertTrue(latch.await(0, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,79 @@
+package iskahoot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QuestionCatalogTest {
+    // id i: 1 + i % 5 points, 2 + i % 3 options, tagged "par" when even and "tres" every third.
+    private static QuestionCatalog catalog(int size) {
+        CompactQuestionStore store = new CompactQuestionStore();
+        for (int i = 0; i < size; i++) {
+            String[] options = new String[2 + i % 3];
+            Arrays.fill(options, "o");
+            String[] tags = i % 2 == 0 ? (i % 3 == 0 ? new String[] { "par", "tres" } : new String[] { "par" })
+                    : (i % 3 == 0 ? new String[] { "tres" } : new String[0]);
+            store.add("q" + i, 1 + i % 5, 0, options, tags);
+        }
+        return new QuestionCatalog(store.trim());
+    }
+
+    private static int[] sorted(int[] ids) {
+        int[] copy = ids.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Test
+    void emptyFilterMatchesEveryQuestion() {
+        int[] all = new int[30];
+        Arrays.setAll(all, i -> i);
+        assertArrayEquals(all, catalog(30).matching(new QuestionFilter()));
+    }
+
+    @Test
+    void criteriaAreCombined() {
+        QuestionFilter filter = new QuestionFilter();
+        filter.addTag("par");
+        filter.addTag("tres");
+        filter.setMinPoints(2);
+        filter.setMaxPoints(4);
+
+        // Multiples of 6 whose points (1 + i % 5) fall in 2..4.
+        assertArrayEquals(new int[] { 6, 12, 18, 36, 42, 48 }, sorted(catalog(60).matching(filter)));
+    }
+
+    @Test
+    void optionCountAndEmptyRanges() {
+        QuestionCatalog catalog = catalog(30);
+        QuestionFilter byOptions = new QuestionFilter();
+        byOptions.setOptionCount(4);
+        assertEquals(10, catalog.matching(byOptions).length);
+
+        QuestionFilter inverted = new QuestionFilter();
+        inverted.setMinPoints(4);
+        inverted.setMaxPoints(2);
+        assertEquals(0, catalog.matching(inverted).length);
+
+        QuestionFilter unknownTag = new QuestionFilter();
+        unknownTag.addTag("nenhuma");
+        assertEquals(0, catalog.matching(unknownTag).length);
+    }
+
+    @Test
+    void selectionPicksDistinctMatches() {
+        QuestionFilter filter = new QuestionFilter();
+        filter.addTag("par");
+        int[] picks = catalog(100).select(filter, 20, new Random(5));
+
+        assertEquals(20, picks.length);
+        assertEquals(20, Arrays.stream(picks).distinct().count());
+        for (int id : picks) {
+            assertEquals(0, id % 2);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package iskahoot.util;
+
+import iskahoot.model.Question;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuestionLoaderTest {
+    private static final String BANK = "{\"title\": \"ignored\", \"questions\": ["
+            + "{\"question\": \"O que é uma thread?\", \"points\": 5, \"correct\": 3,"
+            + " \"options\": [\"Processo\", \"Aplicação\", \"Programa\", \"Processo Ligeiro\"],"
+            + " \"tags\": [\"concorrencia\"], \"extra\": {\"skipped\": [1, 2]}},"
+            + "{\"question\": \"2 + 2?\", \"points\": 1, \"correct\": 0, \"options\": [\"4\", \"5\"]}"
+            + "]}";
+
+    @Test
+    void streamsEveryFieldIntoTheStore() throws Exception {
+        CompactQuestionStore store = QuestionLoader.loadStore(new StringReader(BANK));
+
+        assertEquals(2, store.size());
+        Question first = store.get(0);
+        assertEquals("O que é uma thread?", first.getQuestion());
+        assertEquals(5, first.getPoints());
+        assertEquals(3, first.getCorrect());
+        assertArrayEquals(new String[] { "Processo", "Aplicação", "Programa", "Processo Ligeiro" },
+                first.getOptions());
+        assertArrayEquals(new String[] { "concorrencia" }, first.getTags());
+
+        Question second = store.get(1);
+        assertEquals("2 + 2?", second.getQuestion());
+        assertArrayEquals(new String[0], second.getTags());
+        assertEquals(1, store.points(1));
+        assertEquals(2, store.optionCount(1));
+    }
+
+    @Test
+    void acceptsABareArray() throws Exception {
+        CompactQuestionStore store = QuestionLoader.loadStore(
+                new StringReader("[{\"question\": \"q\", \"points\": 2, \"correct\": 1, \"options\": [\"a\", \"b\"]}]"));
+
+        assertEquals(1, store.size());
+        assertEquals(1, store.get(0).getCorrect());
+    }
+
+    @Test
+    void rejectsACorrectIndexOutsideTheOptions() {
+        QuestionFormatException e = assertThrows(QuestionFormatException.class, () -> QuestionLoader.loadStore(
+                new StringReader("[{\"question\": \"q\", \"correct\": 2, \"options\": [\"a\", \"b\"]}]")));
+        assertTrue(e.getMessage().contains("$[0]"), e.getMessage());
+    }
+
+    @Test
+    void rejectsWrongValueTypes() {
+        assertThrows(QuestionFormatException.class, () -> QuestionLoader.loadStore(
+                new StringReader("[{\"question\": \"q\", \"points\": \"many\", \"options\": [\"a\"]}]")));
+    }
+}
@@ -0,0 +1,97 @@
+package iskahoot.util;
+
+import iskahoot.model.Question;
+import iskahoot.model.QuestionStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuestionPackTest {
+    @TempDir
+    Path dir;
+
+    private static CompactQuestionStore bank() {
+        CompactQuestionStore store = new CompactQuestionStore();
+        store.add("O que é uma thread?", 5, 3, new String[] { "Processo", "Aplicação", "Programa", "Processo Ligeiro" },
+                new String[] { "concorrencia", "básico" });
+        store.add("", 0, 0, new String[] { "só uma" }, new String[0]);
+        String[] many = new String[128];
+        for (int i = 0; i < many.length; i++) {
+            many[i] = "opção " + i;
+        }
+        store.add("Muitas opções", 10, 127, many, new String[] { "grande" });
+        return store.trim();
+    }
+
+    @Test
+    void mappedPackReadsBackWhatWasWritten() throws IOException {
+        CompactQuestionStore source = bank();
+        Path pack = dir.resolve("questions.pack");
+        QuestionPack.write(source, pack);
+
+        QuestionStore mapped = QuestionLoader.openBank(pack);
+        assertTrue(mapped instanceof MappedQuestionStore);
+        assertEquals(source.size(), mapped.size());
+        for (int id = 0; id < source.size(); id++) {
+            Question expected = source.get(id);
+            Question actual = mapped.get(id);
+            assertEquals(expected.getQuestion(), actual.getQuestion());
+            assertEquals(expected.getPoints(), actual.getPoints());
+            assertEquals(expected.getCorrect(), actual.getCorrect());
+            assertArrayEquals(expected.getOptions(), actual.getOptions());
+            assertArrayEquals(expected.getTags(), actual.getTags());
+
+            assertEquals(source.points(id), mapped.points(id));
+            assertEquals(source.optionCount(id), mapped.optionCount(id));
+            assertArrayEquals(source.tags(id), mapped.tags(id));
+        }
+    }
+
+    @Test
+    void emptyBankRoundTrips() throws IOException {
+        Path pack = dir.resolve("empty.pack");
+        QuestionPack.write(new CompactQuestionStore(), pack);
+
+        assertEquals(0, MappedQuestionStore.open(pack).size());
+    }
+
+    @Test
+    void idsOutsideThePackAreRejected() throws IOException {
+        Path pack = dir.resolve("questions.pack");
+        QuestionPack.write(bank(), pack);
+        MappedQuestionStore mapped = MappedQuestionStore.open(pack);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> mapped.get(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> mapped.get(-1));
+    }
+
+    @Test
+    void truncatedPackIsRejected() throws IOException {
+        Path pack = dir.resolve("questions.pack");
+        QuestionPack.write(bank(), pack);
+        byte[] bytes = Files.readAllBytes(pack);
+        Path truncated = dir.resolve("truncated.pack");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 4));
+
+        assertThrows(IOException.class, () -> MappedQuestionStore.open(truncated));
+    }
+
+    @Test
+    void jsonBanksAreStillLoadedByOpenBank() throws IOException {
+        Path json = dir.resolve("questions.json");
+        Files.writeString(json, "{\"questions\": [{\"question\": \"q\", \"points\": 1, \"correct\": 0, \"options\": [\"a\"]}]}");
+
+        QuestionStore store = QuestionLoader.openBank(json);
+        assertTrue(store instanceof CompactQuestionStore);
+        assertEquals("q", store.get(0).getQuestion());
+    }
+}
@@ -0,0 +1,73 @@
+package iskahoot.util;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuestionSamplerTest {
+    @RepeatedTest(20)
+    void picksDistinctIndexesInRange() {
+        int n = 1000;
+        int[] picked = QuestionSampler.sample(n, 200, QuestionSampler.random(null));
+
+        assertEquals(200, picked.length);
+        Set<Integer> seen = new HashSet<>();
+        for (int index : picked) {
+            assertTrue(index >= 0 && index < n, "out of range: " + index);
+            assertTrue(seen.add(index), "picked twice: " + index);
+        }
+    }
+
+    @Test
+    void askingForEverythingIsAPermutation() {
+        int[] picked = QuestionSampler.sample(50, 50, new Random(7));
+        int[] sorted = picked.clone();
+        Arrays.sort(sorted);
+
+        int[] all = new int[50];
+        Arrays.setAll(all, i -> i);
+        assertArrayEquals(all, sorted);
+    }
+
+    @Test
+    void neverPicksMoreThanThereAre() {
+        assertEquals(5, QuestionSampler.sample(5, 10, new Random(1)).length);
+        assertEquals(0, QuestionSampler.sample(0, 10, new Random(1)).length);
+        assertEquals(0, QuestionSampler.sample(10, 0, new Random(1)).length);
+        assertEquals(0, QuestionSampler.sample(10, -1, new Random(1)).length);
+    }
+
+    @Test
+    void sameSeedRepeatsTheDraw() {
+        int[] first = QuestionSampler.sample(100000, 20, QuestionSampler.random(42L));
+        int[] second = QuestionSampler.sample(100000, 20, QuestionSampler.random(42L));
+        int[] other = QuestionSampler.sample(100000, 20, QuestionSampler.random(43L));
+
+        assertArrayEquals(first, second);
+        assertFalse(Arrays.equals(first, other));
+    }
+
+    // Every index should land in the first slot about equally often.
+    @Test
+    void firstPickIsUniform() {
+        int n = 10;
+        int draws = 100000;
+        int[] counts = new int[n];
+        Random random = new Random(3);
+        for (int i = 0; i < draws; i++) {
+            counts[QuestionSampler.sample(n, 3, random)[0]]++;
+        }
+        for (int count : counts) {
+            assertTrue(Math.abs(count - draws / n) < draws / n / 10, Arrays.toString(counts));
+        }
+    }
+}